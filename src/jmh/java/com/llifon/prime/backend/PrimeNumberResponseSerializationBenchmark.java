@@ -0,0 +1,85 @@
+package com.llifon.prime.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how long a {@link PrimeNumberResponse} takes to serialize, as JSON and in the binary encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrimeNumberResponseSerializationBenchmark {
+
+    // The amount of primes on the page
+    @Param({"100", "10000"})
+    public int size;
+
+    // Serializes the JSON responses
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // The response to serialize
+    private PrimeNumberResponse response;
+
+    /**
+     * Creates a page of primes from around 10^9.
+     */
+    @Setup
+    public void setUp() {
+        long[] primes = new WheelSievePrimeSequenceGenerator().longStream(1000000000L, 1100000000L, true)
+                .limit(size).toArray();
+
+        PrimeNumberRequest request = new PrimeNumberRequest();
+        request.setRequestStart(1000000000L);
+        request.setRequestEnd(1100000000L);
+        request.setViewSize(size);
+
+        PrimePageMetadata page = new PrimePageMetadata();
+        page.setElementsOnPage(primes.length);
+        page.setTotalElementsAvailable(-1);
+        page.setTotalPages(-1);
+
+        response = new PrimeNumberResponse();
+        response.setRequestInfo(request);
+        response.setPageInfo(page);
+        response.setPrimeNumbers(Arrays.stream(primes).boxed().collect(Collectors.toList()));
+        response.setNextCursor(PrimeRangeCursor.encode(primes[primes.length - 1]));
+    }
+
+    /**
+     * Serializes the response as JSON.
+     *
+     * @return The serialized response.
+     * @throws IOException if serialization failed.
+     */
+    @Benchmark
+    public byte[] json() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * Serializes the response in the binary encoding.
+     *
+     * @return The serialized response.
+     * @throws IOException if serialization failed.
+     */
+    @Benchmark
+    public byte[] binary() throws IOException {
+        var output = new ByteArrayOutputStream();
+        PrimeNumberResponseCodec.write(response, output);
+        return output.toByteArray();
+    }
+}
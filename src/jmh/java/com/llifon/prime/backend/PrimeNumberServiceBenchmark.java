@@ -0,0 +1,104 @@
+package com.llifon.prime.backend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PrimeNumberService} page requests against an in-memory H2 database, which stands in for Postgres.
+ * The application is started once per trial, which includes populating the database, so only the requests
+ * themselves are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrimeNumberServiceBenchmark {
+
+    // Which store holds the known primes
+    @Param({"rows", "blocks"})
+    public String storage;
+
+    // Whether the in-memory index serves the requests
+    @Param({"true", "false"})
+    public boolean index;
+
+    // The running application
+    private ConfigurableApplicationContext context;
+
+    // The service under measurement
+    private PrimeNumberService service;
+
+    // The cursor of the page after the deep page
+    private String deepCursor;
+
+    /**
+     * Starts the application, which populates the database and builds the index.
+     */
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:primes;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.com.llifon.prime.backend=WARN",
+                        "prime.storage.mode=" + storage,
+                        "prime.index.enabled=" + index)
+                .run();
+
+        service = context.getBean(PrimeNumberService.class);
+        deepCursor = service.requestPagedPrimeNumbers(2, 10000000, 100, 5000).getNextCursor();
+    }
+
+    /**
+     * Stops the application.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Requests the default page, which is the most common request.
+     *
+     * @return The response.
+     */
+    @Benchmark
+    public PrimeNumberResponse firstPage() {
+        return service.requestPagedPrimeNumbers(2, 100, 100, 0);
+    }
+
+    /**
+     * Requests a page deep into a large range.
+     *
+     * @return The response.
+     */
+    @Benchmark
+    public PrimeNumberResponse deepPage() {
+        return service.requestPagedPrimeNumbers(2, 10000000, 100, 5000);
+    }
+
+    /**
+     * Requests the page after the deep page, through its cursor.
+     *
+     * @return The response.
+     */
+    @Benchmark
+    public PrimeNumberResponse deepCursorPage() {
+        return service.requestPrimesAfterCursor(2, 10000000, deepCursor, 100);
+    }
+}
@@ -0,0 +1,91 @@
+package com.llifon.prime.backend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long each generator takes to produce every prime of a range, for ranges of different sizes at
+ * different offsets. Run with {@code ./gradlew jmh}, which also reports the allocations of every benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrimeSequenceGeneratorBenchmark {
+
+    // The generator to measure
+    @Param({"sieve", "segmented", "parallel", "wheel", "millerRabin", "bigInteger"})
+    public String generator;
+
+    // The first value of the range
+    @Param({"2", "1000000000", "1000000000000"})
+    public long from;
+
+    // The amount of numbers in the range
+    @Param({"10000", "1000000"})
+    public long span;
+
+    // The generator of long primes, or null for the BigInteger generator
+    private LongPrimeSequenceGenerator longGenerator;
+
+    // The BigInteger generator, or null for the others
+    private BigIntegerPrimeSequenceGenerator bigIntegerGenerator;
+
+    /**
+     * Creates the generator to measure.
+     */
+    @Setup
+    public void setUp() {
+        switch (generator) {
+            case "sieve":
+                longGenerator = new SieveOfEratosthenesPrimeSequenceGenerator();
+                break;
+            case "segmented":
+                longGenerator = new SegmentedSievePrimeSequenceGenerator();
+                break;
+            case "parallel":
+                longGenerator = new ParallelSegmentedSievePrimeSequenceGenerator();
+                break;
+            case "wheel":
+                longGenerator = new WheelSievePrimeSequenceGenerator();
+                break;
+            case "millerRabin":
+                longGenerator = new MillerRabinPrimeSequenceGenerator();
+                break;
+            case "bigInteger":
+                bigIntegerGenerator = new BigIntegerPrimeSequenceGenerator();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown generator " + generator);
+        }
+    }
+
+    /**
+     * Generates every prime of the range, through the primitive API where the generator has one.
+     *
+     * @param blackhole Consumes the primes.
+     */
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        if (longGenerator != null) {
+            var primes = longGenerator.generateLongs(from, from + span, true);
+            while (primes.hasNext()) {
+                blackhole.consume(primes.nextLong());
+            }
+        } else {
+            var primes = bigIntegerGenerator.generate(BigInteger.valueOf(from), BigInteger.valueOf(from + span), true);
+            while (primes.hasNext()) {
+                blackhole.consume(primes.next());
+            }
+        }
+    }
+}
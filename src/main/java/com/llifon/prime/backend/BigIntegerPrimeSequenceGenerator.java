@@ -2,7 +2,7 @@ package com.llifon.prime.backend;
 
 import java.math.BigInteger;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
  * An implementation of {@link PrimeSequenceGenerator} which uses the inbuilt method of
@@ -23,7 +23,8 @@ public class BigIntegerPrimeSequenceGenerator implements PrimeSequenceGenerator<
      *                  the upper bound will be included.
      * @return An iterator for all of the numbers that were generated. An iterator is chosen here in-order to
      * support a sequence amount that's larger than the capacity of {@link Integer#MAX_VALUE} which could be
-     * an issue if we were to return an ArrayList for example.
+     * an issue if we were to return an ArrayList for example. Each prime is only computed once the iterator
+     * has been advanced to it.
      *
      * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
      */
@@ -35,21 +36,60 @@ public class BigIntegerPrimeSequenceGenerator implements PrimeSequenceGenerator<
             throw new IllegalArgumentException(String.format("{from} (%s) must be less than or equal to {upTo} (%s)", from, upTo));
         }
 
-        BigInteger tracker = from.subtract(BigInteger.ONE); // If from = 2, then first 'next prime' would be 3.
+        return new ProbablePrimeIterator(from, upTo, inclusive);
+    }
+
+    /**
+     * Lazily walks from one probable prime to the next.
+     */
+    private static class ProbablePrimeIterator implements Iterator<BigInteger> {
+
+        // The last number in the range
+        private final BigInteger upTo;
+
+        // Whether the last number should be included
+        private final boolean inclusive;
+
+        // The next prime to return, or null once the range has been exhausted
+        private BigInteger next;
 
-        LinkedList<BigInteger> results = new LinkedList<>();
-        while (true) {
-            tracker = tracker.nextProbablePrime();
+        ProbablePrimeIterator(BigInteger from, BigInteger upTo, boolean inclusive) {
+            this.upTo = upTo;
+            this.inclusive = inclusive;
+            this.next = advance(from.subtract(BigInteger.ONE)); // If from = 2, then first 'next prime' would be 3.
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
 
-            if (tracker.compareTo(upTo) < 0) {
-                results.add(tracker);
-            } else if (inclusive && tracker.compareTo(upTo) == 0) {
-                results.add(tracker);
-            } else {
-                break;
+        @Override
+        public BigInteger next() {
+            if (next == null) {
+                throw new NoSuchElementException();
             }
+
+            var current = next;
+            next = advance(current);
+            return current;
         }
 
-        return results.iterator();
+        /**
+         * Finds the next prime after the tracker, if it is still within the range.
+         *
+         * @param tracker The value to search after.
+         * @return The next prime, or null if it falls outside of the range.
+         */
+        private BigInteger advance(BigInteger tracker) {
+            // nextProbablePrime does not accept negative numbers, and 2 is the first prime anyway
+            if (tracker.signum() < 0) {
+                tracker = BigInteger.ONE;
+            }
+
+            var candidate = tracker.nextProbablePrime();
+            int comparison = candidate.compareTo(upTo);
+            return comparison < 0 || (inclusive && comparison == 0) ? candidate : null;
+        }
     }
 }
@@ -0,0 +1,245 @@
+package com.llifon.prime.backend;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the primes as wheel-encoded blocks in the {@code prime_blocks} table, through the {@link PrimeBlockRepository}.
+ * <p>
+ * Every row holds the primes of {@value PrimeBlockCodec#BLOCK_SPAN} numbers (about 15,000 primes around 10^7) in 8 KB,
+ * so the store is more than an order of magnitude smaller than one row per prime, and a page of a range is usually
+ * decoded from a single row.
+ */
+@Component
+@ConditionalOnProperty(prefix = "prime.storage", name = "mode", havingValue = "blocks")
+public class BlockPrimeNumberStore implements PrimeNumberStore {
+
+    // The amount of blocks which are read from the repository at once while scanning a range
+    private static final int BLOCKS_PER_READ = 4;
+
+    // The name under which the checkpoint of this store is recorded
+    private static final String CHECKPOINT_NAME = "blocks";
+
+    // The repository containing the encoded blocks
+    private final PrimeBlockRepository repository;
+
+    // The repository containing the completion checkpoint
+    private final PrimeCheckpointRepository checkpoints;
+
+    /**
+     * Creates a new block store.
+     *
+     * @param repository  The repository containing the encoded blocks.
+     * @param checkpoints The repository containing the completion checkpoint.
+     */
+    public BlockPrimeNumberStore(PrimeBlockRepository repository, PrimeCheckpointRepository checkpoints) {
+        this.repository = repository;
+        this.checkpoints = checkpoints;
+    }
+
+    @Override
+    public Long getSmallestPrime() {
+        return this.repository.getSmallestPrime();
+    }
+
+    @Override
+    public Long getLargestPrime() {
+        return this.repository.getLargestPrime();
+    }
+
+    @Override
+    public long countPrimes() {
+        return this.repository.countPrimes();
+    }
+
+    @Override
+    public long countPrimesInRange(long start, long end) {
+        if (start > end) {
+            return 0;
+        }
+
+        long firstBlock = PrimeBlockCodec.blockOf(start);
+        long lastBlock = PrimeBlockCodec.blockOf(end);
+
+        // Only the partial blocks at either end of the range have to be decoded
+        long count = 0;
+        var edges = firstBlock == lastBlock ? List.of(firstBlock) : List.of(firstBlock, lastBlock);
+        for (var block : this.repository.findAllById(edges)) {
+            count += PrimeBlockCodec.count(block.getPayload(), block.getBlockIndex(), start, end);
+        }
+        if (lastBlock - firstBlock > 1) {
+            count += this.repository.countPrimesInBlocks(firstBlock + 1, lastBlock - 1);
+        }
+
+        return count;
+    }
+
+    @Override
+    public List<Long> findPage(long start, long end, int pageIndex, int pageSize) {
+        return scan(start, end, (long) pageIndex * pageSize, pageSize);
+    }
+
+    @Override
+    public List<Long> findPrimesStartingAt(long start, long end, int limit) {
+        return scan(start, end, 0, limit);
+    }
+
+    /**
+     * Stores a chunk of primes, by merging them into the payloads of their blocks.
+     * <p>
+     * Writes are serialized, since the chunks written by concurrent callers may share the blocks at their edges.
+     *
+     * @param primes The buffer holding the primes, in ascending order.
+     * @param count  The amount of primes at the start of the buffer to store.
+     */
+    @Override
+    public synchronized void write(long[] primes, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        long firstBlock = PrimeBlockCodec.blockOf(primes[0]);
+        long lastBlock = PrimeBlockCodec.blockOf(primes[count - 1]);
+
+        Map<Long, PrimeBlockEntity> blocks = new HashMap<>();
+        for (var block : this.repository.findBlocks(firstBlock, lastBlock, PageRequest.of(0, (int) (lastBlock - firstBlock + 1)))) {
+            blocks.put(block.getBlockIndex(), block);
+        }
+
+        for (int i = 0; i < count; i++) {
+            long index = PrimeBlockCodec.blockOf(primes[i]);
+            var block = blocks.computeIfAbsent(index, BlockPrimeNumberStore::emptyBlock);
+            PrimeBlockCodec.add(block.getPayload(), index, primes[i]);
+        }
+
+        for (var block : blocks.values()) {
+            refreshSummary(block);
+        }
+
+        this.repository.saveAll(blocks.values());
+    }
+
+    @Override
+    public long getCompletedUpTo() {
+        return this.checkpoints.findById(CHECKPOINT_NAME).map(PrimeCheckpointEntity::getCompletedUpTo).orElse(-1L);
+    }
+
+    @Override
+    public void markCompletedUpTo(long value) {
+        var checkpoint = new PrimeCheckpointEntity();
+        checkpoint.setName(CHECKPOINT_NAME);
+        checkpoint.setCompletedUpTo(value);
+        this.checkpoints.save(checkpoint);
+    }
+
+    @Override
+    public synchronized void deleteAfter(long value) {
+        long edge = PrimeBlockCodec.blockOf(Math.max(value, 0));
+        this.repository.deleteBlocksAfter(edge);
+
+        this.repository.findById(edge).ifPresent(block -> {
+            PrimeBlockCodec.clearAfter(block.getPayload(), edge, value);
+            refreshSummary(block);
+            if (block.getPrimeCount() == 0) {
+                this.repository.delete(block);
+            } else {
+                this.repository.save(block);
+            }
+        });
+    }
+
+    /**
+     * Decodes the primes of a range, skipping the first {@code skip} of them.
+     *
+     * @param start The lowest (inclusive) value of the range.
+     * @param end   The largest (inclusive) value of the range.
+     * @param skip  The amount of primes to skip from the start of the range.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes, in ascending order.
+     */
+    private List<Long> scan(long start, long end, long skip, int limit) {
+        List<Long> primes = new ArrayList<>(Math.min(limit, 1024));
+        if (start > end || limit <= 0) {
+            return primes;
+        }
+
+        long nextBlock = PrimeBlockCodec.blockOf(start);
+        long lastBlock = PrimeBlockCodec.blockOf(end);
+        long remainingSkip = skip;
+
+        while (nextBlock <= lastBlock && primes.size() < limit) {
+            var blocks = this.repository.findBlocks(nextBlock, lastBlock, PageRequest.of(0, BLOCKS_PER_READ));
+            if (blocks.isEmpty()) {
+                break;
+            }
+
+            for (var block : blocks) {
+                long index = block.getBlockIndex();
+                byte[] payload = block.getPayload();
+
+                // Whole blocks (and partial ones) are skipped by their counts, without decoding them
+                if (remainingSkip > 0) {
+                    long inRange = PrimeBlockCodec.count(payload, index, start, end);
+                    if (remainingSkip >= inRange) {
+                        remainingSkip -= inRange;
+                        continue;
+                    }
+                }
+
+                long[] skipped = {0};
+                long toSkip = remainingSkip;
+                int wanted = (int) Math.min(Integer.MAX_VALUE, toSkip + limit - primes.size());
+                PrimeBlockCodec.decode(payload, index, start, end, wanted, p -> {
+                    if (skipped[0] < toSkip) {
+                        skipped[0]++;
+                    } else {
+                        primes.add(p);
+                    }
+                });
+                remainingSkip = 0;
+
+                if (primes.size() >= limit) {
+                    break;
+                }
+            }
+
+            nextBlock = blocks.get(blocks.size() - 1).getBlockIndex() + 1;
+        }
+
+        return primes;
+    }
+
+    /**
+     * Re-calculates the prime count and first and last primes of a block from its payload.
+     *
+     * @param block The block.
+     */
+    private static void refreshSummary(PrimeBlockEntity block) {
+        long index = block.getBlockIndex();
+        long[] first = {-1};
+        PrimeBlockCodec.decode(block.getPayload(), index, 0, Long.MAX_VALUE, 1, p -> first[0] = p);
+
+        block.setPrimeCount((int) PrimeBlockCodec.count(block.getPayload(), index, 0, Long.MAX_VALUE));
+        block.setFirstPrime(first[0] < 0 ? null : first[0]);
+        block.setLastPrime(first[0] < 0 ? null : PrimeBlockCodec.last(block.getPayload(), index));
+    }
+
+    /**
+     * Creates a block which holds no primes.
+     *
+     * @param index The index of the block.
+     * @return The block.
+     */
+    private static PrimeBlockEntity emptyBlock(long index) {
+        var block = new PrimeBlockEntity();
+        block.setBlockIndex(index);
+        block.setPayload(PrimeBlockCodec.emptyPayload());
+        return block;
+    }
+}
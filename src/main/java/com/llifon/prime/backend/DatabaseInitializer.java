@@ -3,96 +3,567 @@ package com.llifon.prime.backend;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.util.AbstractMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An application runner which is auto-configured by Spring to run before the server is launched.
  * <p>
- * This task will populate the database with all of the prime numbers that we need if the database is empty.
+ * This task will populate the database with all of the prime numbers that we need, unless the store is already
+ * checkpointed up to the configured bound. A population which did not finish is discarded and started again from the
+ * last checkpoint, as its workers leave gaps anywhere in the range.
+ * It runs before any other runner, since the {@link PrimeIndexProvider} indexes whatever it has stored.
+ * <p>
+ * The population is a producer/consumer pipeline. One sieve worker per core takes the next segment of the range and
+ * sieves it straight into primitive chunks, which it hands to a fixed set of writers through a bounded queue. The
+ * chunks are recycled through a fixed pool, so a sieve worker waits whenever the writers fall behind, and the heap
+ * holds the same amount of primes no matter how large the range is.
  */
 @Component
-public class DatabaseInitializer implements ApplicationRunner {
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DatabaseInitializer implements ApplicationRunner, DisposableBean {
 
     // the class logger
     private static final Logger logger = LoggerFactory.getLogger(DatabaseInitializer.class);
 
-    // The repository to store the prime numbers into
-    private final PrimeNumberRepository repository;
+    // The amount of chunks which may be queued (or being filled) per sieve worker and writer
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    // The size of the L2 cache which is assumed, when it cannot be detected
+    private static final long DEFAULT_L2_CACHE_BYTES = 256 * 1024;
+
+    // The smallest amount of segments that each sieve worker should get, so that none is left idle near the end
+    private static final int MIN_SEGMENTS_PER_WORKER = 4;
+
+    // The largest share of the heap that the sieve workers may use for their segments together
+    private static final int MAX_HEAP_SHARE = 8;
+
+    // The first number which is populated (prime #2)
+    private static final long POPULATE_FROM = 2L;
+
+    // The minimum amount of time between two progress reports
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+    // The maximum amount of time to wait for a writer to finish the chunk it is writing, once the population stops
+    private static final Duration TERMINATION_TIMEOUT = Duration.ofMinutes(1);
+
+    // The store to write the prime numbers into
+    private final PrimeNumberStore store;
+
+    // The cached bounds of the stored primes, which are only re-read once the population stops, as the writers finish
+    // the segments in any order and would otherwise advance them past segments which are not written yet
+    private final PrimeDatasetBoundsHolder boundsHolder;
+
+    // The meters which track the throughput of the population
+    private final PrimeMetrics metrics;
+
+    // The configuration of the population
+    private final PrimeBackendProperties.Population settings;
+
+    // The index of the next segment which a sieve worker should take
+    private final AtomicLong nextSegment = new AtomicLong();
+
+    // The amount of segments which have been sieved completely
+    private final AtomicLong segmentsSieved = new AtomicLong();
+
+    // The amount of primes which have been written
+    private final AtomicLong primesWritten = new AtomicLong();
+
+    // The System.nanoTime() of the last progress report
+    private final AtomicLong lastReport = new AtomicLong();
+
+    // The amount of segments of the running population, or 0 if none is running
+    private volatile long segmentCount;
+
+    // Whether the population has been asked to stop, or has failed
+    private volatile boolean cancelled;
+
+    // The threads which sieve the segments, while a population is running
+    private volatile ExecutorService sievers;
+
+    // The threads which write the chunks, while a population is running
+    private volatile ExecutorService writers;
 
     /**
      * Creates a new instance of the application runner.
      *
-     * @param repository The repository to store the prime numbers into.
+     * @param store        The store to write the prime numbers into.
+     * @param boundsHolder The cached bounds of the stored primes.
+     * @param properties   The application configuration.
+     * @param metrics      The meters which track the throughput of the population.
      */
-    public DatabaseInitializer(PrimeNumberRepository repository) {
-        this.repository = repository;
+    public DatabaseInitializer(PrimeNumberStore store,
+                               PrimeDatasetBoundsHolder boundsHolder,
+                               PrimeBackendProperties properties,
+                               PrimeMetrics metrics) {
+        this.store = store;
+        this.boundsHolder = boundsHolder;
+        this.settings = properties.getPopulation();
+        this.metrics = metrics;
     }
 
     /**
-     * Runs the initializer task of storing all of the prime numbers which exist in the pre-set range.
+     * Gets how far the running population has got.
+     *
+     * @return The fraction of the segments which have been sieved, between 0 and 1, or 0 if none is running.
+     */
+    public double getProgress() {
+        long segments = this.segmentCount;
+        return segments == 0 ? 0 : (double) this.segmentsSieved.get() / segments;
+    }
+
+    /**
+     * Runs the initializer task of storing all of the prime numbers which exist in the configured range.
      *
      * @param args Not used.
+     * @throws IllegalArgumentException If the population is misconfigured.
      */
     public void run(ApplicationArguments args) throws InterruptedException {
 
-        var largestSupportedPrime = this.repository.getLargestPrime();
-        if (largestSupportedPrime != null) {
-            logger.info("Skipping database population - data already exists");
+        validate(settings);
+        final long populateUpTo = settings.getUpTo();
+        final long offset = resumeFrom(populateUpTo);
+        if (offset < 0) {
             return;
         }
+        final int sieveWorkers = settings.getParallelism() > 0
+                ? settings.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        final int writerCount = settings.getWriters();
+
+        int sieveBytes = sieveBytesFor(detectL2CacheBytes(), Runtime.getRuntime().maxMemory(), sieveWorkers);
+        final long segmentSize = settings.getSegmentSize() > 0
+                ? settings.getSegmentSize()
+                : segmentSizeFor(populateUpTo - offset, sieveWorkers, sieveBytes);
+
+        logger.info("Initializing the database with all primes between {} and {} ({}) using {} sieve workers, {} writers "
+                        + "and segments of {} numbers", offset, populateUpTo, store.getClass().getSimpleName(),
+                sieveWorkers, writerCount, segmentSize);
+
+        // The pool of empty chunks bounds the amount of primes in flight, and the queue hands the filled ones over
+        int chunkCount = CHUNKS_PER_THREAD * (sieveWorkers + writerCount);
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(chunkCount);
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(chunkCount + writerCount);
+        for (int i = 0; i < chunkCount; i++) {
+            free.add(new Chunk(settings.getWriteBatchSize()));
+        }
+
+        this.nextSegment.set(0);
+        this.segmentsSieved.set(0);
+        this.primesWritten.set(0);
+        this.lastReport.set(System.nanoTime());
+        this.segmentCount = (populateUpTo - offset + segmentSize - 1) / segmentSize;
+        this.cancelled = false;
+
+        // Records that a population is in progress, so that a run which does not finish is redone rather than trusted
+        this.store.markCompletedUpTo(offset - 1);
+
+        this.sievers = Executors.newFixedThreadPool(sieveWorkers, daemonThreads("prime-sieve"));
+        this.writers = Executors.newFixedThreadPool(writerCount, daemonThreads("prime-writer"));
+
+        var start = Instant.now();
+        boolean complete;
+        this.metrics.populationStarted();
+        try {
+            var generator = new WheelSievePrimeSequenceGenerator(sieveBytes);
+
+            List<Future<?>> writerTasks = new ArrayList<>();
+            for (int i = 0; i < writerCount; i++) {
+                writerTasks.add(this.writers.submit(() -> write(free, filled)));
+            }
+
+            List<Future<?>> sieveTasks = new ArrayList<>();
+            for (int i = 0; i < sieveWorkers; i++) {
+                sieveTasks.add(this.sievers.submit(() -> sieve(generator, offset, populateUpTo, segmentSize, free, filled)));
+            }
+
+            complete = await(sieveTasks);
+
+            // Every writer stops once it takes an end marker, after the chunks which were queued before it
+            if (complete) {
+                for (int i = 0; i < writerCount; i++) {
+                    filled.put(Chunk.END);
+                }
+            }
+            complete &= await(writerTasks);
+        } finally {
+            this.metrics.populationFinished();
+            this.sievers.shutdownNow();
+            this.writers.shutdownNow();
+            this.segmentCount = 0;
+
+            // A writer which is inside the store when the pools stop has to finish before anything else touches it
+            awaitTermination(this.sievers);
+            awaitTermination(this.writers);
+        }
+
+        // Only a complete population is checkpointed, so that nothing is ever extended on top of a gap
+        if (complete) {
+            this.store.flush();
+            this.store.markCompletedUpTo(populateUpTo - 1);
+        } else {
+            discardAfter(offset - 1);
+        }
+        var end = Instant.now();
+
+        // Re-reads the exact bounds once all of the segments are written, in case a request loaded them in the meantime
+        this.boundsHolder.invalidate();
+        if (complete) {
+            logger.info("Finished populating the database with {} primes in {} ms. Largest available prime is {}",
+                    this.primesWritten.get(), Duration.between(start, end).toMillis(), this.boundsHolder.get().getMax());
+        } else {
+            logger.warn("Stopped populating the database after {} ms; it will be populated from {} on the next start",
+                    Duration.between(start, end).toMillis(), offset);
+        }
+    }
+
+    /**
+     * Works out where the population should start, from the checkpoint of the store. A store which is checkpointed
+     * below the configured bound is resumed from its checkpoint, after discarding anything that was written past it,
+     * since a population which did not finish leaves gaps anywhere in the range that it was writing.
+     *
+     * @param populateUpTo The end of the range (exclusive).
+     * @return The first value to populate, or -1 if the store does not need to be populated.
+     */
+    private long resumeFrom(long populateUpTo) {
+        long completed = this.store.getCompletedUpTo();
+        var bounds = this.boundsHolder.get();
+
+        if (completed >= populateUpTo - 1) {
+            logger.info("Skipping database population - data already exists up to {}", completed);
+            return -1;
+        }
+
+        if (completed < 0) {
+            // Stores which were populated before checkpoints were recorded are left to the extension job
+            if (!bounds.isEmpty()) {
+                logger.info("Skipping database population - data already exists");
+                return -1;
+            }
+            return POPULATE_FROM;
+        }
+
+        if (!bounds.isEmpty() && bounds.getMax() > completed) {
+            logger.info("Discarding the primes after {}, which belong to a population that did not finish", completed);
+            this.store.deleteAfter(completed);
+            this.boundsHolder.invalidate();
+        }
+
+        return Math.max(POPULATE_FROM, completed + 1);
+    }
+
+    /**
+     * Discards whatever a population which did not finish has written, so that no gaps are ever served. If that fails
+     * too, the primes are discarded on the next start instead.
+     *
+     * @param value The largest value to keep.
+     */
+    private void discardAfter(long value) {
+        try {
+            this.store.deleteAfter(value);
+        } catch (RuntimeException e) {
+            logger.error("Failed to discard the primes after {}, which will be discarded on the next start", value, e);
+        }
+    }
+
+    /**
+     * Waits for a stopped pool to finish the tasks that it is running.
+     *
+     * @param pool The pool.
+     * @throws InterruptedException If the thread running the population was interrupted.
+     */
+    private static void awaitTermination(ExecutorService pool) throws InterruptedException {
+        if (!pool.awaitTermination(TERMINATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            logger.warn("Gave up waiting for the population threads to stop after {}", TERMINATION_TIMEOUT);
+        }
+    }
+
+    /**
+     * Picks the amount of bytes that the sieve workers sieve at a time: half of the L2 cache, so that the segment stays
+     * in the cache along with the base primes and the chunk being filled, unless that would take more than a share of
+     * the heap for all of the workers together.
+     *
+     * @param l2CacheBytes The size of the L2 cache.
+     * @param maxHeap      The maximum size of the heap.
+     * @param parallelism  The amount of sieve workers.
+     * @return The amount of bytes, each of which covers 30 numbers.
+     */
+    static int sieveBytesFor(long l2CacheBytes, long maxHeap, int parallelism) {
+        long bytes = Math.min(l2CacheBytes / 2, maxHeap / MAX_HEAP_SHARE / parallelism);
+        return (int) Math.max(WheelSieve.DEFAULT_SEGMENT_BYTES, Math.min(Integer.MAX_VALUE, bytes));
+    }
+
+    /**
+     * Picks the amount of numbers that a sieve worker takes at once: as many as it sieves in one pass over its
+     * cache-sized segment, unless that would leave too few segments to keep every worker busy.
+     *
+     * @param range       The amount of numbers to populate.
+     * @param parallelism The amount of sieve workers.
+     * @param sieveBytes  The amount of bytes that the sieve workers sieve at a time.
+     * @return The amount of numbers.
+     */
+    static long segmentSizeFor(long range, int parallelism, int sieveBytes) {
+        long cacheSized = (long) sieveBytes * WheelSieve.WHEEL;
+        long balanced = range / ((long) parallelism * MIN_SEGMENTS_PER_WORKER);
+        return Math.max(WheelSieve.WHEEL, Math.min(cacheSized, balanced));
+    }
+
+    /**
+     * Checks that the population is configured sensibly.
+     *
+     * @param settings The configuration of the population.
+     * @throws IllegalArgumentException If any setting is out of range.
+     */
+    private static void validate(PrimeBackendProperties.Population settings) {
+        if (settings.getUpTo() <= POPULATE_FROM) {
+            throw new IllegalArgumentException(String.format("{prime.population.up-to} (%s) must be > %s",
+                    settings.getUpTo(), POPULATE_FROM));
+        }
+        if (settings.getSegmentSize() < 0) {
+            throw new IllegalArgumentException(String.format("{prime.population.segment-size} (%s) must be >= 0",
+                    settings.getSegmentSize()));
+        }
+        if (settings.getParallelism() < 0) {
+            throw new IllegalArgumentException(String.format("{prime.population.parallelism} (%s) must be >= 0",
+                    settings.getParallelism()));
+        }
+        if (settings.getWriters() < 1) {
+            throw new IllegalArgumentException(String.format("{prime.population.writers} (%s) must be > 0",
+                    settings.getWriters()));
+        }
+        if (settings.getWriteBatchSize() < 1) {
+            throw new IllegalArgumentException(String.format("{prime.population.write-batch-size} (%s) must be > 0",
+                    settings.getWriteBatchSize()));
+        }
+    }
+
+    /**
+     * Finds the size of the L2 cache of the first CPU, as reported by Linux.
+     *
+     * @return The size in bytes, or {@link #DEFAULT_L2_CACHE_BYTES} if it cannot be found.
+     */
+    private static long detectL2CacheBytes() {
+        var caches = Path.of("/sys/devices/system/cpu/cpu0/cache");
+        try (var entries = Files.newDirectoryStream(caches, "index*")) {
+            for (var cache : entries) {
+                if ("2".equals(Files.readString(cache.resolve("level")).trim())) {
+                    return parseCacheSize(Files.readString(cache.resolve("size")).trim());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not detect the L2 cache size", e);
+        }
 
-        var generator = new SieveOfEratosthenesPrimeSequenceGenerator();
-        var batchRanges = new LinkedList<AbstractMap.SimpleEntry<Integer, Integer>>();
+        return DEFAULT_L2_CACHE_BYTES;
+    }
 
-        final long batchSize = 1000000L; // save to the database in chunks of 1 million
-        final long populateUpTo = 10000000;
-        var offset = 2L; // Start from prime #2
+    /**
+     * Parses a cache size such as {@code 2048K} or {@code 1M}.
+     *
+     * @param size The size.
+     * @return The size in bytes.
+     * @throws NumberFormatException If the size is not a number with an optional K or M suffix.
+     */
+    static long parseCacheSize(String size) {
+        char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        if (unit == 'K') {
+            return Long.parseLong(size.substring(0, size.length() - 1)) * 1024;
+        }
+        if (unit == 'M') {
+            return Long.parseLong(size.substring(0, size.length() - 1)) * 1024 * 1024;
+        }
+
+        return Long.parseLong(size);
+    }
+
+    /**
+     * Stops the running population, if there is one. Whatever has been written so far is kept, but not checkpointed.
+     */
+    @Override
+    public void destroy() {
+        cancel();
+    }
+
+    /**
+     * Stops every sieve worker and writer of the running population.
+     */
+    private void cancel() {
+        this.cancelled = true;
 
-        logger.info("Initializing the database with all primes between {} and {}", offset, populateUpTo);
+        var sieving = this.sievers;
+        if (sieving != null) {
+            sieving.shutdownNow();
+        }
 
-        //// Creates many range batches that will define the parallel work
+        var writing = this.writers;
+        if (writing != null) {
+            writing.shutdownNow();
+        }
+    }
 
-        do {
-            long amount = offset + batchSize;
-            if (amount > populateUpTo) {
-                amount = populateUpTo;
+    /**
+     * Waits for the tasks of one stage of the pipeline to finish.
+     *
+     * @param tasks The tasks.
+     * @return True if every task finished normally, or false if any failed or the population was cancelled.
+     * @throws InterruptedException If the thread running the population was interrupted.
+     */
+    private boolean await(List<Future<?>> tasks) throws InterruptedException {
+        boolean complete = true;
+        for (var task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof CancellationException)) {
+                    logger.error("Failed to populate a range of primes", e.getCause());
+                }
+                complete = false;
+            } catch (CancellationException e) {
+                complete = false;
             }
+        }
 
-            batchRanges.add(new AbstractMap.SimpleEntry<>((int) offset, (int) amount));
-            offset += batchSize;
-        } while (offset <= populateUpTo);
+        return complete && !this.cancelled;
+    }
 
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        List<Callable<Boolean>> tasks = new ArrayList<>();
+    /**
+     * Takes segments until there are none left, and sieves each of them into chunks for the writers.
+     *
+     * @param generator    The generator of the primes.
+     * @param offset       The first value of the range.
+     * @param populateUpTo The end of the range (exclusive).
+     * @param segmentSize  The amount of numbers in each segment.
+     * @param free         The pool of empty chunks.
+     * @param filled       The queue of chunks which are waiting to be written.
+     */
+    private void sieve(LongPrimeSequenceGenerator generator, long offset, long populateUpTo, long segmentSize,
+                       BlockingQueue<Chunk> free, BlockingQueue<Chunk> filled) {
+        try {
+            long segment;
+            while (!this.cancelled && (segment = this.nextSegment.getAndIncrement()) < this.segmentCount) {
+                long from = offset + segment * segmentSize;
+                long to = Math.min(populateUpTo, from + segmentSize);
 
-        for (final var object : batchRanges) {
-            Callable<Boolean> c = () -> {
-                List<PrimeNumberEntity> primeList = new LinkedList<>();
-                var primes = generator.generate(object.getKey(), object.getValue(), false);
+                // The primes are sieved straight into pooled chunks, which are recycled once they have been written
+                var primes = generator.generateLongs(from, to, false);
                 while (primes.hasNext()) {
-                    var prime = new PrimeNumberEntity();
-                    prime.setPrimeNumber((long) primes.next());
-                    primeList.add(prime);
+                    var chunk = free.take();
+                    chunk.count = 0;
+                    while (chunk.count < chunk.primes.length && primes.hasNext()) {
+                        chunk.primes[chunk.count++] = primes.nextLong();
+                    }
+                    filled.put(chunk);
                 }
 
-                this.repository.saveAll(primeList);
-                return true;
-            };
-            tasks.add(c);
+                this.segmentsSieved.incrementAndGet();
+                reportProgress();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (RuntimeException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the queued chunks until the end of the population, and hands every chunk back to the pool.
+     *
+     * @param free   The pool of empty chunks.
+     * @param filled The queue of chunks which are waiting to be written.
+     */
+    private void write(BlockingQueue<Chunk> free, BlockingQueue<Chunk> filled) {
+        try {
+            Chunk chunk;
+            while ((chunk = filled.take()) != Chunk.END) {
+                this.store.write(chunk.primes, chunk.count);
+                this.metrics.recordPopulated(chunk.count);
+                this.primesWritten.addAndGet(chunk.count);
+                free.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (RuntimeException e) {
+            // Without this writer the sieve workers would eventually wait for an empty chunk forever
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Logs how far the population has got, unless it was reported recently.
+     */
+    private void reportProgress() {
+        long now = System.nanoTime();
+        long last = this.lastReport.get();
+        boolean finished = this.segmentsSieved.get() == this.segmentCount;
+        if ((finished || now - last >= PROGRESS_INTERVAL.toNanos()) && this.lastReport.compareAndSet(last, now)) {
+            logger.info("Populating the database: {} of {} segments sieved ({}%), {} primes written",
+                    this.segmentsSieved.get(), this.segmentCount, Math.round(getProgress() * 100),
+                    this.primesWritten.get());
         }
+    }
 
-        executorService.invokeAll(tasks);
-        largestSupportedPrime = this.repository.getLargestPrime();
-        logger.info("Finished populating the database. Largest available prime is {}", largestSupportedPrime);
+    /**
+     * Creates a factory of named daemon threads, so that a population which is stuck does not keep the JVM alive.
+     *
+     * @param name The name of the threads.
+     * @return The thread factory.
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        var counter = new AtomicLong();
+        return runnable -> {
+            var thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A re-usable chunk of primes which is passed from a sieve worker to a writer.
+     */
+    private static final class Chunk {
+
+        // Marks the end of the population for a writer
+        static final Chunk END = new Chunk(0);
+
+        // The primes, in ascending order
+        final long[] primes;
+
+        // The amount of primes at the start of the buffer
+        int count;
+
+        /**
+         * Creates an empty chunk.
+         *
+         * @param capacity The maximum amount of primes that the chunk can hold.
+         */
+        Chunk(int capacity) {
+            this.primes = new long[capacity];
+        }
     }
-}
\ No newline at end of file
+}
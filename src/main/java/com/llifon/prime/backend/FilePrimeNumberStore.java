@@ -0,0 +1,229 @@
+package com.llifon.prime.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the primes in a single memory-mapped {@link PrimeIndex} file, with no database involved at all.
+ * <p>
+ * The file holds the wheel bitmap and rank directory of every prime up to the largest stored one, in the layout
+ * the index reads them in, so reads go straight to the page cache without copying, and a restart only has to map
+ * the file again. Written primes are gathered on the heap, and only become readable once the store is
+ * {@link #flush() flushed}, which rewrites the file.
+ */
+@Component
+@ConditionalOnProperty(prefix = "prime.storage", name = "mode", havingValue = "file")
+public class FilePrimeNumberStore implements PrimeNumberStore {
+
+    // the class logger
+    private static final Logger logger = LoggerFactory.getLogger(FilePrimeNumberStore.class);
+
+    // The primes which are not represented on the wheel
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    // The location of the index file
+    private final Path file;
+
+    // The currently mapped index, or null if no primes have been stored yet
+    private volatile PrimeIndex index;
+
+    // The bitmap of the primes written since the last flush, or null if there are none
+    private long[] pending;
+
+    // The largest prime written since the last flush
+    private long pendingLargest = -1;
+
+    /**
+     * Creates a new file store, mapping the index file if it already exists.
+     *
+     * @param properties The application configuration.
+     * @throws IOException if the existing index file cannot be mapped.
+     */
+    public FilePrimeNumberStore(PrimeBackendProperties properties) throws IOException {
+        this.file = Path.of(properties.getStorage().getFile());
+        if (Files.exists(this.file)) {
+            this.index = PrimeIndex.map(this.file);
+            logger.info("Mapped the prime index file {} up to {}", this.file, this.index.getUpperBound());
+        }
+    }
+
+    @Override
+    public Long getSmallestPrime() {
+        var current = this.index;
+        return current == null || current.getPrimeCount() == 0 ? null : current.select(0);
+    }
+
+    @Override
+    public Long getLargestPrime() {
+        var current = this.index;
+        return current == null ? null : current.getLargestPrime();
+    }
+
+    @Override
+    public long countPrimes() {
+        var current = this.index;
+        return current == null ? 0 : current.getPrimeCount();
+    }
+
+    @Override
+    public long countPrimesInRange(long start, long end) {
+        var current = this.index;
+        return current == null ? 0 : current.count(start, Math.min(end, current.getUpperBound()));
+    }
+
+    @Override
+    public List<Long> findPage(long start, long end, int pageIndex, int pageSize) {
+        return page(start, end, (long) pageIndex * pageSize, pageSize);
+    }
+
+    @Override
+    public List<Long> findPrimesStartingAt(long start, long end, int limit) {
+        return page(start, end, 0, limit);
+    }
+
+    /**
+     * Gathers a chunk of primes, which become readable on the next {@link #flush()}.
+     *
+     * @param primes The buffer holding the primes, in ascending order.
+     * @param count  The amount of primes at the start of the buffer to store.
+     */
+    @Override
+    public synchronized void write(long[] primes, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        int wordsNeeded = PrimeIndex.wordCountFor(primes[count - 1]);
+        if (pending == null) {
+            var current = this.index;
+            pending = current == null ? new long[wordsNeeded] : current.copyBitmap(wordsNeeded);
+            pendingLargest = current == null ? -1 : current.getUpperBound();
+        } else if (pending.length < wordsNeeded) {
+            pending = Arrays.copyOf(pending, Math.max(wordsNeeded, pending.length + (pending.length >> 1)));
+        }
+
+        for (int i = 0; i < count; i++) {
+            long prime = primes[i];
+            if (prime >= 7) {
+                // Values off the wheel would otherwise land on the bit of the next candidate
+                long bit = WheelSieve.bitIndexAtOrAfter(0, prime);
+                if (WheelSieve.valueOf(0, bit) != prime) {
+                    throw new IllegalArgumentException(String.format("%s is not a prime", prime));
+                }
+                pending[(int) (bit >>> 6)] |= 1L << bit;
+            } else if (Arrays.binarySearch(WHEEL_PRIMES, prime) < 0) {
+                throw new IllegalArgumentException(String.format("%s is not a prime", prime));
+            }
+        }
+
+        pendingLargest = Math.max(pendingLargest, primes[count - 1]);
+    }
+
+    /**
+     * Rewrites the index file with every prime written so far, and maps it.
+     * <p>
+     * The store holds the complete set of primes up to the largest one written, so every prime between 2 and that
+     * prime must have been written.
+     */
+    @Override
+    public synchronized void flush() {
+        if (pending == null) {
+            return;
+        }
+
+        var built = PrimeIndex.fromBitmap(pendingLargest, Arrays.copyOf(pending, PrimeIndex.wordCountFor(pendingLargest)));
+        try {
+            built.save(this.file);
+            this.index = PrimeIndex.map(this.file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the prime index file " + this.file, e);
+        }
+
+        pending = null;
+        pendingLargest = -1;
+        logger.info("Wrote the prime index file {} up to {}", this.file, built.getUpperBound());
+    }
+
+    /**
+     * Gets the value up to which the file holds every prime. Since the file is only ever replaced as a whole, this is
+     * simply its upper bound.
+     *
+     * @return The upper bound of the file, or -1 if there is no file.
+     */
+    @Override
+    public long getCompletedUpTo() {
+        var current = this.index;
+        return current == null ? -1 : current.getUpperBound();
+    }
+
+    /**
+     * Does nothing, as the file is its own checkpoint.
+     *
+     * @param value The value.
+     */
+    @Override
+    public void markCompletedUpTo(long value) {
+    }
+
+    @Override
+    public synchronized void deleteAfter(long value) {
+        pending = null;
+        pendingLargest = -1;
+
+        var current = this.index;
+        if (current == null || current.getUpperBound() <= value) {
+            return;
+        }
+
+        try {
+            if (value < 2) {
+                Files.deleteIfExists(this.file);
+                this.index = null;
+                return;
+            }
+
+            long[] words = Arrays.copyOf(current.copyBitmap(0), PrimeIndex.wordCountFor(value));
+            PrimeIndex.fromBitmap(value, words).save(this.file);
+            this.index = PrimeIndex.map(this.file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to truncate the prime index file " + this.file, e);
+        }
+    }
+
+    @Override
+    public PrimeIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Copies a page of the primes within a range.
+     *
+     * @param start The lowest (inclusive) value of the range.
+     * @param end   The largest (inclusive) value of the range.
+     * @param skip  The amount of primes of the range to skip.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes, in ascending order.
+     */
+    private List<Long> page(long start, long end, long skip, int limit) {
+        var current = this.index;
+        if (current == null) {
+            return List.of();
+        }
+
+        long[] primes = current.page(start, end, skip, limit);
+        List<Long> boxed = new ArrayList<>(primes.length);
+        for (long prime : primes) {
+            boxed.add(prime);
+        }
+        return boxed;
+    }
+}
@@ -0,0 +1,90 @@
+package com.llifon.prime.backend;
+
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A primitive specialization of {@link PrimeSequenceGenerator} for generating prime numbers as {@code long} values.
+ * <p>
+ * The boxed API forces every prime through a {@link Long} (or {@link Integer}) allocation, which dominates the cost of
+ * bulk generation. Implementations of this interface hand out raw {@code long} values instead, either through a
+ * {@link PrimitiveIterator.OfLong}, a {@link LongStream} or by filling a caller-supplied buffer.
+ */
+public interface LongPrimeSequenceGenerator {
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return A lazy iterator of the primes in ascending order, which does not box its values.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    PrimitiveIterator.OfLong generateLongs(long from, long upTo, boolean inclusive);
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, as a sequential stream.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number.
+     * @return A lazy stream of the primes in ascending order.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    default LongStream longStream(long from, long upTo, boolean inclusive) {
+        Spliterator.OfLong spliterator = Spliterators.spliteratorUnknownSize(generateLongs(from, upTo, inclusive),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.longStream(spliterator, false);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, by repeatedly filling
+     * {@code buffer} and handing it to {@code consumer} along with the amount of primes it holds. The buffer is
+     * re-used between calls, so the consumer must copy anything it wants to keep.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number.
+     * @param buffer    The caller-supplied buffer to fill.
+     * @param consumer  Receives the buffer and the amount of valid primes at the start of it.
+     * @return The total amount of primes that were generated.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}, or the buffer is empty
+     */
+    default long generateInto(long from, long upTo, boolean inclusive, long[] buffer, ObjIntConsumer<long[]> consumer) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("{buffer} must not be empty");
+        }
+
+        PrimitiveIterator.OfLong primes = generateLongs(from, upTo, inclusive);
+
+        long total = 0;
+        int count = 0;
+        while (primes.hasNext()) {
+            buffer[count++] = primes.nextLong();
+            if (count == buffer.length) {
+                consumer.accept(buffer, count);
+                total += count;
+                count = 0;
+            }
+        }
+
+        if (count > 0) {
+            consumer.accept(buffer, count);
+            total += count;
+        }
+
+        return total;
+    }
+}
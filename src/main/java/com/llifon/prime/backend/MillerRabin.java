@@ -0,0 +1,170 @@
+package com.llifon.prime.backend;
+
+/**
+ * A deterministic, allocation-free primality test for every non-negative {@code long}.
+ * <p>
+ * Candidates are first checked against the small primes up to {@value #LARGEST_SMALL_PRIME}, which settles most
+ * composites (and every number below {@code 59^2}) with a few divisions. The rest go through Miller-Rabin with the
+ * seven bases found by Jim Sinclair, which together have no strong pseudoprime below 2^64, so the answer is exact rather
+ * than probable. The modular exponentiation works in Montgomery form, where every multiplication is a 64x64-bit
+ * product ({@link Math#multiplyHigh}) followed by a reduction made of multiplications and a subtraction, with no
+ * division at all.
+ */
+public final class MillerRabin {
+
+    // The bases which together make Miller-Rabin deterministic below 2^64
+    private static final long[] BASES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+    // The primes which candidates are trial-divided by
+    private static final long[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53};
+
+    // The largest prime which candidates are trial-divided by
+    private static final long LARGEST_SMALL_PRIME = 53;
+
+    private MillerRabin() {
+    }
+
+    /**
+     * Checks whether a number is prime.
+     *
+     * @param n The number.
+     * @return {@code true} if the number is a prime number.
+     */
+    public static boolean isPrime(long n) {
+        if (n < 2) {
+            return false;
+        }
+
+        for (long prime : SMALL_PRIMES) {
+            if (n % prime == 0) {
+                return n == prime;
+            }
+        }
+
+        // Every composite below the square of the next prime has a factor which was tried above
+        if (n < 59 * 59) {
+            return true;
+        }
+
+        return isStrongProbablePrimeToAllBases(n);
+    }
+
+    /**
+     * Runs Miller-Rabin with every base of the deterministic set.
+     *
+     * @param n The number, which must be odd and larger than every base reduced modulo it matters for.
+     * @return {@code true} if the number is a strong probable prime to every base, and therefore prime.
+     */
+    private static boolean isStrongProbablePrimeToAllBases(long n) {
+        long inverse = inverseOf(n);
+        long one = Long.remainderUnsigned(-n, n); // 2^64 mod n, which is 1 in Montgomery form
+        long minusOne = n - one;
+        long rSquared = rSquaredOf(n, one);
+
+        // Writes n - 1 as d * 2^s, with d odd
+        int s = Long.numberOfTrailingZeros(n - 1);
+        long d = (n - 1) >>> s;
+
+        nextBase:
+        for (long base : BASES) {
+            long a = base % n;
+            if (a == 0) {
+                continue;
+            }
+
+            long x = power(multiply(a, rSquared, n, inverse), d, one, n, inverse);
+            if (x == one || x == minusOne) {
+                continue;
+            }
+
+            for (int i = 1; i < s; i++) {
+                x = multiply(x, x, n, inverse);
+                if (x == minusOne) {
+                    continue nextBase;
+                }
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Raises a number in Montgomery form to a power.
+     *
+     * @param base     The base, in Montgomery form.
+     * @param exponent The exponent.
+     * @param one      1 in Montgomery form.
+     * @param n        The modulus.
+     * @param inverse  The inverse of the modulus modulo 2^64.
+     * @return The power, in Montgomery form.
+     */
+    private static long power(long base, long exponent, long one, long n, long inverse) {
+        long result = one;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) {
+                result = multiply(result, base, n, inverse);
+            }
+            base = multiply(base, base, n, inverse);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two numbers in Montgomery form, i.e. calculates {@code a * b / 2^64 mod n}.
+     *
+     * @param a       The first number, which must be less than {@code n}.
+     * @param b       The second number, which must be less than {@code n}.
+     * @param n       The modulus, which must be odd and less than 2^63.
+     * @param inverse The inverse of the modulus modulo 2^64.
+     * @return The product, in Montgomery form.
+     */
+    private static long multiply(long a, long b, long n, long inverse) {
+        // a and b are below 2^63, so the signed high half is also the unsigned one
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+
+        // m * n has the same low half as the product, so subtracting it only leaves the high halves
+        long m = low * inverse;
+        long mnHigh = Math.multiplyHigh(m, n) + ((m >> 63) & n);
+
+        long result = high - mnHigh;
+        return result < 0 ? result + n : result;
+    }
+
+    /**
+     * Calculates the inverse of an odd number modulo 2^64, with Newton's iteration.
+     *
+     * @param n The odd number.
+     * @return The inverse.
+     */
+    private static long inverseOf(long n) {
+        // n is its own inverse modulo 2^3, and every iteration doubles the amount of correct bits
+        long inverse = n;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - n * inverse;
+        }
+        return inverse;
+    }
+
+    /**
+     * Calculates {@code 2^128 mod n}, which converts numbers into Montgomery form.
+     *
+     * @param n   The modulus, which must be less than 2^63.
+     * @param one {@code 2^64 mod n}.
+     * @return {@code 2^128 mod n}.
+     */
+    private static long rSquaredOf(long n, long one) {
+        // Doubles 2^64 mod n another 64 times. Every value stays below n < 2^63, so doubling never overflows.
+        long value = one;
+        for (int i = 0; i < 64; i++) {
+            value <<= 1;
+            if (value >= n || value < 0) {
+                value -= n;
+            }
+        }
+        return value;
+    }
+}
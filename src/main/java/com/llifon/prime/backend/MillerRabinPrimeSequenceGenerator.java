@@ -0,0 +1,142 @@
+package com.llifon.prime.backend;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Generates a prime number sequence by testing every candidate with the deterministic {@link MillerRabin} test.
+ * <p>
+ * Only the numbers which are coprime to 2, 3 and 5 are tested (see {@link WheelSieve}), and nothing is allocated per
+ * candidate. Unlike the sieves, this needs no base primes up to the square root of the range, so it is the cheaper
+ * choice for short ranges far beyond what can be sieved, up to {@link Long#MAX_VALUE}.
+ */
+public class MillerRabinPrimeSequenceGenerator implements PrimeSequenceGenerator<Long>, LongPrimeSequenceGenerator {
+
+    // The primes which are not represented on the wheel
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return An iterator for all of the numbers that were generated. The numbers are tested lazily as the
+     * iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public Iterator<Long> generate(Long from, Long upTo, boolean inclusive) {
+        return generateLongs(from, upTo, inclusive);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, without boxing.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return A primitive iterator for all of the numbers that were generated. The numbers are tested lazily
+     * as the iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public PrimitiveIterator.OfLong generateLongs(long from, long upTo, boolean inclusive) {
+
+        if (from > upTo) {
+            throw new IllegalArgumentException(String.format("{from} (%s) must be less than or equal to {upTo} (%s)", from, upTo));
+        }
+
+        long first = Math.max(from, 2L);
+        long last = inclusive ? upTo : upTo - 1;
+        if (!inclusive && upTo <= 2) {
+            last = 1; // Nothing to generate, and avoids underflowing Long.MIN_VALUE
+        }
+
+        return new CandidateIterator(first, last);
+    }
+
+    /**
+     * Lazily walks through the wheel candidates of the range, testing each of them.
+     */
+    private static class CandidateIterator implements PrimitiveIterator.OfLong {
+
+        // The first value in the range
+        private final long first;
+
+        // The last value in the range (inclusive)
+        private final long last;
+
+        // The index of the next wheel prime (2, 3, 5) to consider
+        private int wheelPrimeIndex;
+
+        // The wheel bit index of the next candidate to test
+        private long bitIndex;
+
+        // The next prime to hand out, or -1 if it has not been found yet
+        private long next = -1;
+
+        // Whether the range has been exhausted
+        private boolean done;
+
+        CandidateIterator(long first, long last) {
+            this.first = first;
+            this.last = last;
+            this.done = first > last || last < 7;
+            if (!done) {
+                this.bitIndex = WheelSieve.bitIndexAtOrAfter(0, Math.max(first, 7L));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) {
+                return true;
+            }
+
+            // The primes which are not on the wheel come first
+            while (wheelPrimeIndex < WHEEL_PRIMES.length) {
+                long prime = WHEEL_PRIMES[wheelPrimeIndex++];
+                if (prime >= first && prime <= last) {
+                    next = prime;
+                    return true;
+                }
+            }
+
+            while (!done) {
+                long candidate = WheelSieve.valueOf(0, bitIndex++);
+
+                // Candidates past Long.MAX_VALUE wrap around to negative values
+                if (candidate > last || candidate < 0) {
+                    done = true;
+                    return false;
+                }
+
+                if (MillerRabin.isPrime(candidate)) {
+                    next = candidate;
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long prime = next;
+            next = -1;
+            return prime;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.llifon.prime.backend;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates primes beyond the stored maximum while a request is being served, within a per-request budget.
+ * <p>
+ * Ranges up to {@value #SIEVE_LIMIT} are sieved segment by segment, while larger ones are searched number by number
+ * with the deterministic {@link MillerRabin} test, since the base primes of a sieve that high would cost more than the
+ * page itself. In both cases only as many primes as the page needs are generated, and generation stops with an
+ * {@link IllegalArgumentException} once it has looked at more numbers, or taken longer, than the budget allows.
+ */
+@Component
+public class OnDemandPrimeSource {
+
+    // The largest value which is generated with a sieve rather than a primality test
+    static final long SIEVE_LIMIT = 1000000000000L;
+
+    // The amount of primes generated between checks of the time budget
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    // Whether primes may be generated on demand at all
+    private final boolean enabled;
+
+    // The maximum amount of numbers that a single request may search through
+    private final long maxSpan;
+
+    // The maximum amount of time that a single request may spend generating primes
+    private final Duration timeBudget;
+
+    // Generates the primes of sieved ranges
+    private final SegmentedSievePrimeSequenceGenerator sieve = new SegmentedSievePrimeSequenceGenerator();
+
+    // Generates the primes of ranges beyond the sieve limit
+    private final MillerRabinPrimeSequenceGenerator tested = new MillerRabinPrimeSequenceGenerator();
+
+    /**
+     * Creates a new on-demand prime source.
+     *
+     * @param properties The application configuration.
+     */
+    public OnDemandPrimeSource(PrimeBackendProperties properties) {
+        var settings = properties.getOnDemand();
+        this.enabled = settings.isEnabled();
+        this.maxSpan = settings.getMaxSpan();
+        this.timeBudget = settings.getTimeBudget();
+    }
+
+    /**
+     * Checks whether primes may be generated on demand.
+     *
+     * @return True if ranges beyond the stored maximum may be served.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Generates a page of the primes within a range.
+     *
+     * @param from  The first value in the range.
+     * @param to    The last value in the range (inclusive).
+     * @param skip  The amount of primes of the range to skip.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes of the page, in ascending order.
+     * @throws IllegalArgumentException if the page cannot be generated within the budget.
+     */
+    public List<Long> generate(long from, long to, long skip, int limit) {
+        return generate(from, to, skip, limit, newDeadline());
+    }
+
+    /**
+     * Starts the time budget of a request which generates its primes over several calls, such as an export.
+     *
+     * @return The {@link System#nanoTime()} by which the request has to finish generating.
+     */
+    public long newDeadline() {
+        return System.nanoTime() + timeBudget.toNanos();
+    }
+
+    /**
+     * Checks up-front that a range which is generated in full, such as an export, lies within the span budget.
+     *
+     * @param from The first value in the range.
+     * @param to   The last value in the range (inclusive).
+     * @throws IllegalArgumentException if the range spans more numbers than a single request may search through.
+     */
+    public void requireWithinSpan(long from, long to) {
+        if (from <= to && to - from > maxSpan) {
+            throw budgetExceeded();
+        }
+    }
+
+    /**
+     * Generates a page of the primes within a range, against a time budget which was started earlier.
+     *
+     * @param from     The first value in the range.
+     * @param to       The last value in the range (inclusive).
+     * @param skip     The amount of primes of the range to skip.
+     * @param limit    The maximum amount of primes to return.
+     * @param deadline The {@link System#nanoTime()} by which generation has to finish, from {@link #newDeadline()}.
+     * @return The primes of the page, in ascending order.
+     * @throws IllegalArgumentException if the page cannot be generated within the budget.
+     */
+    public List<Long> generate(long from, long to, long skip, int limit, long deadline) {
+        List<Long> page = new ArrayList<>(Math.min(limit, 1024));
+        if (from > to || limit <= 0) {
+            return page;
+        }
+
+        long searchedTo = to - from > maxSpan ? from + maxSpan : to;
+
+        var primes = searchedTo <= SIEVE_LIMIT
+                ? sieve.generateLongs(from, searchedTo, true)
+                : tested.generateLongs(from, searchedTo, true);
+
+        long seen = 0;
+        while (page.size() < limit && primes.hasNext()) {
+            long prime = primes.nextLong();
+            if (seen++ >= skip) {
+                page.add(prime);
+            }
+
+            if (seen % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                throw budgetExceeded();
+            }
+        }
+
+        // Running out of numbers to search is only an error if the range itself did not run out
+        if (page.size() < limit && searchedTo < to) {
+            throw budgetExceeded();
+        }
+
+        return page;
+    }
+
+    /**
+     * Creates the error for a page which cannot be generated within the budget.
+     *
+     * @return The error.
+     */
+    private IllegalArgumentException budgetExceeded() {
+        return new IllegalArgumentException(String.format(
+                "The requested page lies too far beyond the stored primes to be generated on demand "
+                        + "(at most %s numbers or %s ms per request)", maxSpan, timeBudget.toMillis()));
+    }
+}
@@ -0,0 +1,370 @@
+package com.llifon.prime.backend;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Generates a prime number sequence by sieving the segments of a range in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The base primes are computed once per sequence and shared (read-only) between all of the workers, while each
+ * worker sieves its own block of consecutive segments into a private buffer. The primes are still handed out in
+ * ascending order: the iterator keeps a bounded window of blocks in flight ahead of the consumer and joins them in
+ * order, so peak memory is bounded by the window size rather than the width of the range.
+ * <p>
+ * For callers that can consume the primes from many threads, {@link #longStream} returns a PARALLEL stream whose
+ * spliterator splits the range on block boundaries. The stream is ordered, so {@code forEachOrdered} and
+ * {@code toArray} still see the primes in ascending order. Like any parallel stream, it runs on the pool of the thread
+ * which starts its terminal operation, which is the common pool rather than the pool given to this generator, unless
+ * the operation is started from within that pool (for example {@code pool.submit(() -> stream.count()).join()}).
+ */
+public class ParallelSegmentedSievePrimeSequenceGenerator implements PrimeSequenceGenerator<Long>, LongPrimeSequenceGenerator {
+
+    // The amount of segments that each worker sieves per task, which amortizes the cost of scheduling a task
+    private static final int SEGMENTS_PER_BLOCK = 8;
+
+    // The amount of blocks that are kept in flight per worker thread, ahead of the consumer
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 2;
+
+    // The pool to sieve the blocks on
+    private final ForkJoinPool pool;
+
+    // The amount of numbers which are sieved at a time by a worker
+    private final int segmentSize;
+
+    /**
+     * Creates a new generator which sieves on the common pool, using the
+     * {@link SegmentedSieve#DEFAULT_SEGMENT_SIZE default} segment size.
+     */
+    public ParallelSegmentedSievePrimeSequenceGenerator() {
+        this(ForkJoinPool.commonPool(), SegmentedSieve.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new generator.
+     *
+     * @param pool        The pool to sieve the segments on.
+     * @param segmentSize The amount of numbers to sieve at a time. Ideally the segment should fit within the CPU cache.
+     * @throws IllegalArgumentException {segmentSize} must be > 0
+     */
+    public ParallelSegmentedSievePrimeSequenceGenerator(ForkJoinPool pool, int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException(String.format("{segmentSize} (%s) must be > 0", segmentSize));
+        }
+
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return An iterator for all of the numbers that were generated, in ascending order.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public Iterator<Long> generate(Long from, Long upTo, boolean inclusive) {
+        return generateLongs(from, upTo, inclusive);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, without boxing. The blocks
+     * of the range are sieved in parallel ahead of the consumer.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return A primitive iterator for all of the numbers that were generated, in ascending order.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public PrimitiveIterator.OfLong generateLongs(long from, long upTo, boolean inclusive) {
+        return new OrderedBlockIterator(Range.of(from, upTo, inclusive));
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, as a PARALLEL stream which
+     * splits the range on block boundaries.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number.
+     * @return An ordered, parallel stream of the primes, which runs on the pool of the thread that starts its
+     * terminal operation (the common pool, unless it is started from within another pool).
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public LongStream longStream(long from, long upTo, boolean inclusive) {
+        Range range = Range.of(from, upTo, inclusive);
+        SegmentedSieve sieve = range.isEmpty() ? null : new SegmentedSieve(range.last);
+        return StreamSupport.longStream(new BlockSpliterator(sieve, range.first, range.last), true);
+    }
+
+    /**
+     * Gets the amount of numbers which are sieved by a single task.
+     *
+     * @return The block size.
+     */
+    private long blockSize() {
+        return (long) segmentSize * SEGMENTS_PER_BLOCK;
+    }
+
+    /**
+     * Sieves every segment within {@code [low, high]} and collects the primes.
+     *
+     * @param sieve The shared sieve.
+     * @param low   The first value of the block.
+     * @param high  The last value of the block (inclusive).
+     * @return The primes of the block in ascending order.
+     */
+    private long[] sieveBlock(SegmentedSieve sieve, long low, long high) {
+        long[] words = new long[SegmentedSieve.wordsFor((int) Math.min(segmentSize, high - low + 1))];
+        long[] primes = new long[SegmentedSieve.estimatePrimeCount(high - low + 1)];
+        int count = 0;
+
+        long segmentStart = low;
+        while (true) {
+            int length = (int) Math.min(segmentSize, high - segmentStart + 1);
+            sieve.sieve(segmentStart, length, words);
+
+            for (int i = SegmentedSieve.nextSetBit(words, 0, length); i >= 0; i = SegmentedSieve.nextSetBit(words, i + 1, length)) {
+                if (count == primes.length) {
+                    primes = Arrays.copyOf(primes, primes.length * 2);
+                }
+                primes[count++] = segmentStart + i;
+            }
+
+            // Checks for the end of the block without computing segmentStart + length (which may overflow)
+            if (high - segmentStart < length) {
+                break;
+            }
+            segmentStart += length;
+        }
+
+        return count == primes.length ? primes : Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * The normalized, inclusive bounds of a requested range.
+     */
+    private static class Range {
+
+        // The first value to sieve
+        final long first;
+
+        // The last value to sieve (inclusive)
+        final long last;
+
+        Range(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        static Range of(long from, long upTo, boolean inclusive) {
+            if (from > upTo) {
+                throw new IllegalArgumentException(String.format("{from} (%s) must be less than or equal to {upTo} (%s)", from, upTo));
+            }
+
+            long last = inclusive ? upTo : upTo - 1;
+            if (!inclusive && upTo <= 2) {
+                last = 1; // Nothing to generate, and avoids underflowing Long.MIN_VALUE
+            }
+
+            return new Range(Math.max(from, 2L), last);
+        }
+
+        boolean isEmpty() {
+            return first > last;
+        }
+    }
+
+    /**
+     * Hands out the primes of a range in order, while a bounded window of blocks is sieved ahead on the pool.
+     */
+    private class OrderedBlockIterator implements PrimitiveIterator.OfLong {
+
+        // The blocks which have been submitted but not consumed yet, in range order
+        private final ArrayDeque<ForkJoinTask<long[]>> pending = new ArrayDeque<>();
+
+        // The sieve shared between all blocks, null if the range is empty
+        private final SegmentedSieve sieve;
+
+        // The last value of the range (inclusive)
+        private final long last;
+
+        // The first value of the next block to submit
+        private long nextBlockStart;
+
+        // Whether every block of the range has been submitted
+        private boolean submittedAll;
+
+        // The primes of the block currently being consumed
+        private long[] current = new long[0];
+
+        // The index of the next prime in the current block
+        private int index;
+
+        OrderedBlockIterator(Range range) {
+            this.last = range.last;
+            this.nextBlockStart = range.first;
+            this.submittedAll = range.isEmpty();
+            this.sieve = submittedAll ? null : new SegmentedSieve(range.last);
+
+            int window = Math.max(1, pool.getParallelism() * BLOCKS_IN_FLIGHT_PER_THREAD);
+            for (int i = 0; i < window && !submittedAll; i++) {
+                submitNextBlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index >= current.length) {
+                ForkJoinTask<long[]> next = pending.poll();
+                if (next == null) {
+                    return false;
+                }
+
+                current = next.join();
+                index = 0;
+
+                if (!submittedAll) {
+                    submitNextBlock();
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return current[index++];
+        }
+
+        /**
+         * Submits the next block of the range to the pool.
+         */
+        private void submitNextBlock() {
+            final long low = nextBlockStart;
+            final long high = last - low < blockSize() ? last : low + blockSize() - 1;
+
+            pending.add(pool.submit(() -> sieveBlock(sieve, low, high)));
+
+            if (high == last) {
+                submittedAll = true;
+            } else {
+                nextBlockStart = high + 1;
+            }
+        }
+    }
+
+    /**
+     * A spliterator over the primes of a range, which can be split on block boundaries for parallel streams.
+     */
+    private class BlockSpliterator implements Spliterator.OfLong {
+
+        // The sieve shared between all splits
+        private final SegmentedSieve sieve;
+
+        // The last value covered by this split (inclusive)
+        private final long last;
+
+        // The first value of the next block to sieve
+        private long next;
+
+        // Whether every block of this split has been sieved
+        private boolean exhausted;
+
+        // The primes of the block currently being consumed
+        private long[] current = new long[0];
+
+        // The index of the next prime in the current block
+        private int index;
+
+        BlockSpliterator(SegmentedSieve sieve, long first, long last) {
+            this.sieve = sieve;
+            this.next = first;
+            this.last = last;
+            this.exhausted = sieve == null || first > last;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (index >= current.length) {
+                if (exhausted) {
+                    return false;
+                }
+
+                long high = last - next < blockSize() ? last : next + blockSize() - 1;
+                current = sieveBlock(sieve, next, high);
+                index = 0;
+
+                if (high == last) {
+                    exhausted = true;
+                } else {
+                    next = high + 1;
+                }
+            }
+
+            action.accept(current[index++]);
+            return true;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            // Only splits off blocks which have not been started yet
+            if (exhausted || index < current.length) {
+                return null;
+            }
+
+            long blocks = (last - next) / blockSize() + 1;
+            if (blocks < 2) {
+                return null;
+            }
+
+            long middle = next + (blocks / 2) * blockSize();
+            var prefix = new BlockSpliterator(sieve, next, middle - 1);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            long buffered = current.length - index;
+            return exhausted ? buffered : buffered + (last - next + 1);
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            return null; // Natural ordering
+        }
+    }
+}
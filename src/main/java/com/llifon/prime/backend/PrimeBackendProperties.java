@@ -0,0 +1,387 @@
+package com.llifon.prime.backend;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * The typed configuration of the prime number backend, bound from the {@code prime.*} application properties.
+ */
+@ConfigurationProperties(prefix = "prime")
+public class PrimeBackendProperties {
+
+    // The configuration of the in-memory prime index
+    private final Index index = new Index();
+
+    // The configuration of the initial database population
+    private final Population population = new Population();
+
+    // The configuration of the persistent prime store
+    private final Storage storage = new Storage();
+
+    // The configuration of the background extension job
+    private final Extension extension = new Extension();
+
+    // The configuration of the on-demand generation beyond the stored primes
+    private final OnDemand onDemand = new OnDemand();
+
+    // The configuration of the response cache
+    private final Cache cache = new Cache();
+
+    // The configuration of the threads which serve requests
+    private final Execution execution = new Execution();
+
+    /**
+     * Gets the configuration of the in-memory prime index.
+     *
+     * @return The index configuration.
+     */
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the configuration of the initial database population.
+     *
+     * @return The population configuration.
+     */
+    public Population getPopulation() {
+        return population;
+    }
+
+    /**
+     * Gets the configuration of the persistent prime store.
+     *
+     * @return The storage configuration.
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Gets the configuration of the background extension job.
+     *
+     * @return The extension configuration.
+     */
+    public Extension getExtension() {
+        return extension;
+    }
+
+    /**
+     * Gets the configuration of the on-demand generation beyond the stored primes.
+     *
+     * @return The on-demand configuration.
+     */
+    public OnDemand getOnDemand() {
+        return onDemand;
+    }
+
+    /**
+     * Gets the configuration of the response cache.
+     *
+     * @return The cache configuration.
+     */
+    public Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the configuration of the threads which serve requests.
+     *
+     * @return The execution configuration.
+     */
+    public Execution getExecution() {
+        return execution;
+    }
+
+    /**
+     * The configuration of the in-memory {@link PrimeIndex}.
+     */
+    public static class Index {
+
+        // Whether the index is built at startup and used to serve requests
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * The configuration of the {@link DatabaseInitializer}.
+     */
+    public static class Population {
+
+        // How the generated primes are written into the database
+        private Writer writer = Writer.BULK;
+
+        // The value up to which (exclusive) the database is populated
+        private long upTo = 10000000L;
+
+        // The amount of numbers that a sieve worker takes at once, or 0 to derive it from the L2 cache and heap sizes
+        private long segmentSize = 0;
+
+        // The amount of sieve workers, or 0 for one per core
+        private int parallelism = 0;
+
+        // The amount of writers, each of which holds one database connection while it writes
+        private int writers = 4;
+
+        // The maximum amount of primes which are handed to the store at once
+        private int writeBatchSize = 10000;
+
+        public Writer getWriter() {
+            return writer;
+        }
+
+        public void setWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        public long getUpTo() {
+            return upTo;
+        }
+
+        public void setUpTo(long upTo) {
+            this.upTo = upTo;
+        }
+
+        public long getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getWriters() {
+            return writers;
+        }
+
+        public void setWriters(int writers) {
+            this.writers = writers;
+        }
+
+        public int getWriteBatchSize() {
+            return writeBatchSize;
+        }
+
+        public void setWriteBatchSize(int writeBatchSize) {
+            this.writeBatchSize = writeBatchSize;
+        }
+    }
+
+    /**
+     * The configuration of the {@link PrimeNumberStore}.
+     */
+    public static class Storage {
+
+        // Which store holds the known primes
+        private StorageMode mode = StorageMode.ROWS;
+
+        // The location of the index file, in file mode
+        private String file = "primes.idx";
+
+        public StorageMode getMode() {
+            return mode;
+        }
+
+        public void setMode(StorageMode mode) {
+            this.mode = mode;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * The configuration of the {@link PrimeExtensionJob}.
+     */
+    public static class Extension {
+
+        // Whether the job runs in the background at startup
+        private boolean enabled = false;
+
+        // The value up to which the job extends the known primes
+        private long target = 1000000000L;
+
+        // The amount of numbers which are written (and checkpointed) at once
+        private long segmentSize = 10000000L;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTarget() {
+            return target;
+        }
+
+        public void setTarget(long target) {
+            this.target = target;
+        }
+
+        public long getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+    }
+
+    /**
+     * The configuration of the {@link OnDemandPrimeSource}.
+     */
+    public static class OnDemand {
+
+        // Whether ranges beyond the stored primes are generated, rather than rejected
+        private boolean enabled = false;
+
+        // The maximum amount of numbers that a single request may search through
+        private long maxSpan = 100000000L;
+
+        // The maximum amount of time that a single request may spend generating primes
+        private Duration timeBudget = Duration.ofMillis(500);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxSpan() {
+            return maxSpan;
+        }
+
+        public void setMaxSpan(long maxSpan) {
+            this.maxSpan = maxSpan;
+        }
+
+        public Duration getTimeBudget() {
+            return timeBudget;
+        }
+
+        public void setTimeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+    }
+
+    /**
+     * The configuration of the {@link PrimePageCache}.
+     */
+    public static class Cache {
+
+        // Whether serialized range responses are cached
+        private boolean enabled = true;
+
+        // The maximum amount of memory that the cached responses may take up
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * The configuration of the threads which serve requests (see {@link VirtualThreadConfiguration}).
+     */
+    public static class Execution {
+
+        // Which threads serve the requests
+        private ExecutionMode mode = ExecutionMode.BLOCKING;
+
+        public ExecutionMode getMode() {
+            return mode;
+        }
+
+        public void setMode(ExecutionMode mode) {
+            this.mode = mode;
+        }
+
+        // The maximum amount of connections that Tomcat accepts in the virtual mode
+        private int maxConnections = 20000;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+    }
+
+    /**
+     * The ways in which the known primes can be stored.
+     */
+    public enum StorageMode {
+
+        // One row per prime, through the RowPrimeNumberStore
+        ROWS,
+
+        // One wheel-encoded row per block of numbers, through the BlockPrimeNumberStore
+        BLOCKS,
+
+        // A memory-mapped index file, through the FilePrimeNumberStore
+        FILE
+    }
+
+    /**
+     * The ways in which generated primes can be written into the database.
+     */
+    public enum Writer {
+
+        // Through the PrimeBulkLoader, using COPY on PostgreSQL and JDBC batches elsewhere (rows mode only)
+        BULK,
+
+        // Through PrimeNumberRepository.saveAll, one INSERT per prime
+        JPA
+    }
+
+    /**
+     * The threads which requests can be served on.
+     */
+    public enum ExecutionMode {
+
+        // The bounded Tomcat worker pool, where every request holds a platform thread while it waits
+        BLOCKING,
+
+        // A new virtual thread per request, on JDK 21 or newer (outside of the runtimes that Spring Boot 2.4 supports)
+        VIRTUAL
+    }
+}
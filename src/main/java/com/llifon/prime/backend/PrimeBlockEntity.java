@@ -0,0 +1,121 @@
+package com.llifon.prime.backend;
+
+import javax.persistence.*;
+
+/**
+ * Database entity class for storing the known primes of a block of numbers, as encoded by {@link PrimeBlockCodec}.
+ * <p>
+ * The block index is the primary key, so there is neither a surrogate id nor a second index to maintain, and a range
+ * of numbers is read as a handful of adjacent rows. PostgreSQL also compresses the payloads as they are stored.
+ */
+@Entity
+@Table(name = "prime_blocks")
+public class PrimeBlockEntity {
+
+    // The backing field for the index of the block
+    private Long blockIndex;
+
+    // The backing field for the encoded primes of the block
+    private byte[] payload;
+
+    // The backing field for the amount of primes in the block
+    private int primeCount;
+
+    // The backing field for the smallest prime in the block
+    private Long firstPrime;
+
+    // The backing field for the largest prime in the block
+    private Long lastPrime;
+
+    /**
+     * Gets the index of the block, which covers the numbers from {@code blockIndex * BLOCK_SPAN}.
+     *
+     * @return The block index.
+     */
+    @Id
+    public Long getBlockIndex() {
+        return blockIndex;
+    }
+
+    /**
+     * Sets the index of the block.
+     *
+     * @param blockIndex The block index.
+     */
+    public void setBlockIndex(Long blockIndex) {
+        this.blockIndex = blockIndex;
+    }
+
+    /**
+     * Gets the encoded primes of the block.
+     *
+     * @return The payload.
+     */
+    @Column(nullable = false, length = 1 + PrimeBlockCodec.BLOCK_BYTES)
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Sets the encoded primes of the block.
+     *
+     * @param payload The payload.
+     */
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the amount of primes in the block.
+     *
+     * @return The amount of primes.
+     */
+    public int getPrimeCount() {
+        return primeCount;
+    }
+
+    /**
+     * Sets the amount of primes in the block.
+     *
+     * @param primeCount The amount of primes.
+     */
+    public void setPrimeCount(int primeCount) {
+        this.primeCount = primeCount;
+    }
+
+    /**
+     * Gets the smallest prime in the block.
+     *
+     * @return The smallest prime, or null if the block holds none.
+     */
+    public Long getFirstPrime() {
+        return firstPrime;
+    }
+
+    /**
+     * Sets the smallest prime in the block.
+     *
+     * @param firstPrime The smallest prime.
+     */
+    public void setFirstPrime(Long firstPrime) {
+        this.firstPrime = firstPrime;
+    }
+
+    /**
+     * Gets the largest prime in the block.
+     *
+     * @return The largest prime, or null if the block holds none.
+     */
+    public Long getLastPrime() {
+        return lastPrime;
+    }
+
+    /**
+     * Sets the largest prime in the block.
+     *
+     * @param lastPrime The largest prime.
+     */
+    public void setLastPrime(Long lastPrime) {
+        this.lastPrime = lastPrime;
+    }
+}
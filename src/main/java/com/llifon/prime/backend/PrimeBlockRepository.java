@@ -0,0 +1,79 @@
+package com.llifon.prime.backend;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * A JPA repository which communicates with the table that's associated with the {@link PrimeBlockEntity} entity.
+ * <p>
+ * It is not published by Spring Data REST, as the blocks must only be written through {@link BlockPrimeNumberStore},
+ * which keeps them consistent with each other and with the cached bounds.
+ */
+@RepositoryRestResource(exported = false)
+public interface PrimeBlockRepository extends JpaRepository<PrimeBlockEntity, Long> {
+
+    /**
+     * Retrieves the blocks within the given range of block indexes (inclusive), limited to the size of the given page.
+     *
+     * @param first The index of the first block.
+     * @param last The index of the last block.
+     * @param limit The pageable meta-data object whose page size limits the amount of blocks returned.
+     *
+     * @return The blocks, in ascending order. Blocks which were never written are absent.
+     */
+    @Query("SELECT b FROM PrimeBlockEntity b WHERE b.blockIndex >= ?1 and b.blockIndex <= ?2 ORDER BY b.blockIndex ASC")
+    List<PrimeBlockEntity> findBlocks(Long first, Long last, Pageable limit);
+
+    /**
+     * Counts the primes of the blocks within the given range of block indexes (inclusive).
+     *
+     * @param first The index of the first block.
+     * @param last The index of the last block.
+     *
+     * @return The amount of primes.
+     */
+    @Query("SELECT coalesce(sum(b.primeCount), 0) FROM PrimeBlockEntity b WHERE b.blockIndex >= ?1 and b.blockIndex <= ?2")
+    Long countPrimesInBlocks(Long first, Long last);
+
+    /**
+     * Counts all of the primes in the repository.
+     *
+     * @return The amount of primes.
+     */
+    @Query("SELECT coalesce(sum(b.primeCount), 0) FROM PrimeBlockEntity b")
+    Long countPrimes();
+
+    /**
+     * Gets the smallest prime number in the repository.
+     *
+     * @return The smallest prime value.
+     */
+    @Query("SELECT min(b.firstPrime) FROM PrimeBlockEntity b")
+    Long getSmallestPrime();
+
+    /**
+     * Gets the largest prime number in the repository.
+     *
+     * @return The largest prime value.
+     */
+    @Query("SELECT max(b.lastPrime) FROM PrimeBlockEntity b")
+    Long getLargestPrime();
+
+    /**
+     * Deletes every block after the given block index.
+     *
+     * @param blockIndex The index of the last block to keep.
+     *
+     * @return The amount of deleted blocks.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PrimeBlockEntity b WHERE b.blockIndex > ?1")
+    int deleteBlocksAfter(Long blockIndex);
+}
@@ -0,0 +1,172 @@
+package com.llifon.prime.backend;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Writes primes straight into the {@code known_primes} table, bypassing JPA.
+ * <p>
+ * Since {@link PrimeNumberEntity} uses {@code GenerationType.IDENTITY}, Hibernate has to insert every entity on its
+ * own to read back its id, which makes {@code saveAll} issue one INSERT per prime. This loader instead leaves the id to
+ * the database and either streams the primes through the PostgreSQL {@code COPY} protocol, or (on any other database)
+ * sends them as a single JDBC batch per chunk.
+ */
+@Component
+@ConditionalOnProperty(prefix = "prime.storage", name = "mode", havingValue = "rows", matchIfMissing = true)
+public class PrimeBulkLoader {
+
+    // the class logger
+    private static final Logger logger = LoggerFactory.getLogger(PrimeBulkLoader.class);
+
+    // The statement which streams rows of the COPY text format into the table
+    private static final String COPY_SQL = "COPY known_primes (prime_number) FROM STDIN";
+
+    // The statement used for each row of a JDBC batch
+    private static final String INSERT_SQL = "INSERT INTO known_primes (prime_number) VALUES (?)";
+
+    // The maximum amount of bytes that a prime takes up in the COPY text format, including its line break
+    static final int MAX_ROW_BYTES = 20;
+
+    // The data source of the repository
+    private final DataSource dataSource;
+
+    /**
+     * Creates a new bulk loader.
+     *
+     * @param dataSource The data source of the repository.
+     */
+    public PrimeBulkLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Writes a chunk of primes into the table.
+     *
+     * @param primes The buffer holding the primes.
+     * @param count  The amount of primes at the start of the buffer to write.
+     * @throws SQLException if the primes could not be written.
+     */
+    public void write(long[] primes, int count) throws SQLException {
+        if (count <= 0) {
+            return;
+        }
+
+        try (Connection connection = this.dataSource.getConnection()) {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class), primes, count);
+            } else {
+                batch(connection, primes, count);
+            }
+        }
+    }
+
+    /**
+     * Streams a chunk of primes into the table with a single COPY.
+     *
+     * @param connection The PostgreSQL connection.
+     * @param primes     The buffer holding the primes.
+     * @param count      The amount of primes to write.
+     * @throws SQLException if the COPY failed.
+     */
+    private static void copy(PGConnection connection, long[] primes, int count) throws SQLException {
+        byte[] rows = new byte[count * MAX_ROW_BYTES];
+        int length = encodeRows(primes, count, rows);
+
+        var copyIn = connection.getCopyAPI().copyIn(COPY_SQL);
+        try {
+            copyIn.writeToCopy(rows, 0, length);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Inserts a chunk of primes with a single JDBC batch, within one transaction.
+     *
+     * @param connection The connection.
+     * @param primes     The buffer holding the primes.
+     * @param count      The amount of primes to write.
+     * @throws SQLException if the batch failed.
+     */
+    private static void batch(Connection connection, long[] primes, int count) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (var statement = connection.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < count; i++) {
+                statement.setLong(1, primes[i]);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            logger.error("Failed to insert a batch of {} primes starting at {}", count, primes[0]);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Encodes primes as rows of the COPY text format, which is one decimal number per line.
+     *
+     * @param primes The buffer holding the primes, which must not be negative.
+     * @param count  The amount of primes to encode.
+     * @param rows   The output, which must hold at least {@code count * 20} bytes.
+     * @return The amount of bytes written to {@code rows}.
+     */
+    static int encodeRows(long[] primes, int count, byte[] rows) {
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            position = encodeRow(primes[i], rows, position);
+        }
+
+        return position;
+    }
+
+    /**
+     * Encodes a single value as a decimal number followed by a line break.
+     *
+     * @param value    The value, which must not be negative.
+     * @param rows     The output, which must hold at least 20 bytes after {@code position}.
+     * @param position The index in {@code rows} to write the row at.
+     * @return The index in {@code rows} right after the row.
+     */
+    static int encodeRow(long value, byte[] rows, int position) {
+        // Writes the digits backwards from the end of the number, then the line break after it
+        int end = position + digitsOf(value);
+        int digit = end;
+        do {
+            rows[--digit] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        rows[end] = '\n';
+        return end + 1;
+    }
+
+    /**
+     * Counts the decimal digits of a non-negative value.
+     *
+     * @param value The value.
+     * @return The amount of digits.
+     */
+    private static int digitsOf(long value) {
+        int digits = 1;
+        for (long limit = 10; digits < 19 && value >= limit; limit *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,55 @@
+package com.llifon.prime.backend;
+
+import javax.persistence.*;
+
+/**
+ * Database entity class for recording how far a store of primes is known to be complete.
+ */
+@Entity
+@Table(name = "prime_checkpoints")
+public class PrimeCheckpointEntity {
+
+    // The backing field for the name of the store that the checkpoint belongs to
+    private String name;
+
+    // The backing field for the value up to which every prime has been stored
+    private Long completedUpTo;
+
+    /**
+     * Gets the name of the store that the checkpoint belongs to.
+     *
+     * @return The name.
+     */
+    @Id
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the store that the checkpoint belongs to.
+     *
+     * @param name The name.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the value up to which (inclusive) every prime has been stored.
+     *
+     * @return The value.
+     */
+    @Column(nullable = false)
+    public Long getCompletedUpTo() {
+        return completedUpTo;
+    }
+
+    /**
+     * Sets the value up to which (inclusive) every prime has been stored.
+     *
+     * @param completedUpTo The value.
+     */
+    public void setCompletedUpTo(Long completedUpTo) {
+        this.completedUpTo = completedUpTo;
+    }
+}
@@ -0,0 +1,14 @@
+package com.llifon.prime.backend;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+
+/**
+ * A JPA repository which communicates with the table that's associated with the {@link PrimeCheckpointEntity} entity.
+ * <p>
+ * It is not published by Spring Data REST, as a forged checkpoint would make the population and extension skip primes
+ * which were never written.
+ */
+@RepositoryRestResource(exported = false)
+public interface PrimeCheckpointRepository extends JpaRepository<PrimeCheckpointEntity, String> {
+}
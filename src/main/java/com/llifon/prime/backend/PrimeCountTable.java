@@ -0,0 +1,190 @@
+package com.llifon.prime.backend;
+
+/**
+ * A small table of precomputed prime counts, which answers pi(x) over {@code [0, upperBound]} in bounded time.
+ * <p>
+ * Unlike {@link PrimeIndex}, the table does not keep the primes themselves. It only stores the amount of primes
+ * before every block of {@value #BLOCK_SPAN} numbers, which is about 130 bytes per million numbers. A lookup reads
+ * the count of the enclosing block, then sieves the (at most {@value #BLOCK_SPAN} numbers of the) partial block with
+ * a {@link WheelSieve} and counts its bits. The cost of a lookup is therefore constant, no matter how wide the range
+ * or how many primes are known.
+ */
+public final class PrimeCountTable implements PrimeCounter {
+
+    // The amount of wheel bytes in each block of the table
+    private static final int BLOCK_BYTES = 2048;
+
+    // The amount of numbers in each block of the table
+    static final long BLOCK_SPAN = (long) BLOCK_BYTES * WheelSieve.WHEEL;
+
+    // The primes which are not represented on the wheel
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    // The largest value covered by the table
+    private final long upperBound;
+
+    // The sieve used to count the partial blocks
+    private final WheelSieve sieve;
+
+    // blockCounts[b] is the amount of primes on the wheel which are less than b * BLOCK_SPAN
+    private final long[] blockCounts;
+
+    /**
+     * Creates a table over precomputed block counts.
+     *
+     * @param upperBound  The largest value covered by the table.
+     * @param blockCounts The cumulative block counts.
+     */
+    private PrimeCountTable(long upperBound, long[] blockCounts) {
+        this.upperBound = upperBound;
+        this.sieve = new WheelSieve(upperBound);
+        this.blockCounts = blockCounts;
+    }
+
+    /**
+     * Builds a table covering all values up to (and including) {@code upperBound}, by sieving them once.
+     *
+     * @param upperBound The largest value to cover.
+     * @return The table.
+     * @throws IllegalArgumentException if the bound is negative.
+     */
+    public static PrimeCountTable build(long upperBound) {
+        if (upperBound < 0) {
+            throw new IllegalArgumentException(String.format("{upperBound} (%s) must be >= 0", upperBound));
+        }
+
+        int blocks = (int) (upperBound / BLOCK_SPAN) + 1;
+        long[] blockCounts = new long[blocks + 1];
+
+        var table = new PrimeCountTable(upperBound, blockCounts);
+        long[] words = new long[WheelSieve.wordsFor(BLOCK_BYTES)];
+
+        long total = 0;
+        for (int b = 0; b < blocks; b++) {
+            blockCounts[b] = total;
+            total += table.countBlockUpTo(b, Math.min(upperBound, b * BLOCK_SPAN + (BLOCK_SPAN - 1)), words);
+        }
+        blockCounts[blocks] = total;
+
+        return table;
+    }
+
+    @Override
+    public long getUpperBound() {
+        return upperBound;
+    }
+
+    @Override
+    public long countUpTo(long x) {
+        if (x > upperBound) {
+            throw new IllegalArgumentException(String.format("%s is outside of the prime count table [0, %s]", x, upperBound));
+        }
+
+        if (x < 7) {
+            return wheelPrimesUpTo(x);
+        }
+
+        int block = (int) (x / BLOCK_SPAN);
+        long[] words = new long[WheelSieve.wordsFor(BLOCK_BYTES)];
+        return WHEEL_PRIMES.length + blockCounts[block] + countBlockUpTo(block, x, words);
+    }
+
+    @Override
+    public long select(long k) {
+        long total = WHEEL_PRIMES.length + blockCounts[blockCounts.length - 1];
+        if (k < 0 || k >= total) {
+            throw new IllegalArgumentException(String.format("{k} (%s) must be within [0, %s)", k, total));
+        }
+
+        if (k < WHEEL_PRIMES.length) {
+            return WHEEL_PRIMES[(int) k];
+        }
+
+        // Finds the last block whose cumulative count is <= k
+        long target = k - WHEEL_PRIMES.length;
+        int low = 0;
+        int high = blockCounts.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blockCounts[middle] <= target) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        long blockStart = low * BLOCK_SPAN;
+        int bytes = bytesUpTo(low, upperBound);
+        long[] words = new long[WheelSieve.wordsFor(BLOCK_BYTES)];
+        sieve.sieve(blockStart, bytes, words);
+
+        long remaining = target - blockCounts[low];
+        for (int w = 0; ; w++) {
+            long word = words[w];
+            int bits = Long.bitCount(word);
+            if (remaining < bits) {
+                for (long i = 0; i < remaining; i++) {
+                    word &= word - 1;
+                }
+                return WheelSieve.valueOf(blockStart, ((long) w << 6) + Long.numberOfTrailingZeros(word));
+            }
+            remaining -= bits;
+        }
+    }
+
+    /**
+     * Counts the primes on the wheel within a block which are less than or equal to {@code x}.
+     *
+     * @param block The block.
+     * @param x     The largest value to count, which must be within the block.
+     * @param words A buffer large enough for one block.
+     * @return The amount of primes.
+     */
+    private long countBlockUpTo(int block, long x, long[] words) {
+        long blockStart = block * BLOCK_SPAN;
+        int bytes = bytesUpTo(block, x);
+        sieve.sieve(blockStart, bytes, words);
+
+        long endBit = WheelSieve.bitIndexAtOrAfter(blockStart, x + 1);
+        int fullWords = (int) (endBit >>> 6);
+
+        long count = 0;
+        for (int w = 0; w < fullWords; w++) {
+            count += Long.bitCount(words[w]);
+        }
+
+        int remainder = (int) (endBit & 63);
+        if (remainder != 0) {
+            count += Long.bitCount(words[fullWords] & ((1L << remainder) - 1));
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the amount of wheel bytes of a block which are needed to cover every value up to {@code x}.
+     *
+     * @param block The block.
+     * @param x     The largest value, which must be within the block.
+     * @return The amount of bytes.
+     */
+    private static int bytesUpTo(int block, long x) {
+        return (int) Math.min(BLOCK_BYTES, (x - block * BLOCK_SPAN) / WheelSieve.WHEEL + 1);
+    }
+
+    /**
+     * Counts the primes 2, 3 and 5 which are less than or equal to {@code x}.
+     *
+     * @param x The value.
+     * @return The amount of wheel primes {@code <= x}.
+     */
+    private static long wheelPrimesUpTo(long x) {
+        int count = 0;
+        for (long prime : WHEEL_PRIMES) {
+            if (prime <= x) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
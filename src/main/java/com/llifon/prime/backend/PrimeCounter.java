@@ -0,0 +1,74 @@
+package com.llifon.prime.backend;
+
+/**
+ * Answers prime-counting queries, pi(x), over the known primes {@code [0, upperBound]} without scanning them.
+ * <p>
+ * This is used to work out pagination totals and the position of a page within a range, so that the data source
+ * only ever has to fetch the primes of the page itself.
+ */
+public interface PrimeCounter {
+
+    /**
+     * Gets the largest value covered by this counter.
+     *
+     * @return The upper bound.
+     */
+    long getUpperBound();
+
+    /**
+     * Counts the primes which are less than or equal to {@code x}, i.e. the prime-counting function pi(x).
+     *
+     * @param x The value, which must be covered by the counter.
+     * @return The amount of primes {@code <= x}.
+     */
+    long countUpTo(long x);
+
+    /**
+     * Finds the k-th prime (0-based), such that {@code select(0) == 2}.
+     *
+     * @param k The rank of the prime.
+     * @return The prime.
+     * @throws IllegalArgumentException if the counter does not cover that many primes.
+     */
+    long select(long k);
+
+    /**
+     * Checks whether a value is covered by this counter.
+     *
+     * @param n The value.
+     * @return {@code true} if the counter can answer queries about n.
+     */
+    default boolean covers(long n) {
+        return n <= getUpperBound();
+    }
+
+    /**
+     * Counts the primes within the given range (inclusive).
+     *
+     * @param from The first value in the range.
+     * @param to   The last value in the range, which must be covered by the counter.
+     * @return The amount of primes in the range.
+     */
+    default long count(long from, long to) {
+        if (from > to) {
+            return 0;
+        }
+
+        return countUpTo(to) - (from <= 0 ? 0 : countUpTo(from - 1));
+    }
+
+    /**
+     * Finds the first prime of a page within a range, which is the prime at offset {@code pageIndex * pageSize}
+     * of the range.
+     *
+     * @param from      The first value in the range.
+     * @param to        The last value in the range, which must be covered by the counter.
+     * @param pageIndex The index of the page.
+     * @param pageSize  The amount of primes on each page.
+     * @return The first prime of the page, or -1 if the page is past the end of the range.
+     */
+    default long pageStart(long from, long to, int pageIndex, int pageSize) {
+        long startRank = (from <= 0 ? 0 : countUpTo(from - 1)) + (long) pageIndex * pageSize;
+        return startRank < countUpTo(to) ? select(startRank) : -1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.llifon.prime.backend;
+
+/**
+ * An immutable snapshot of the bounds of the stored prime numbers.
+ * <p>
+ * Every change to the stored primes produces a new snapshot with a larger {@link #getVersion() version}, so anything
+ * derived from the dataset (such as a cached response) can tell whether it is still current by comparing versions.
+ */
+public final class PrimeDatasetBounds {
+
+    // The smallest stored prime, or -1 if there are none
+    private final long min;
+
+    // The largest stored prime, or -1 if there are none
+    private final long max;
+
+    // The amount of stored primes
+    private final long count;
+
+    // The version of the dataset that these bounds describe
+    private final long version;
+
+    /**
+     * Creates a snapshot of the dataset bounds.
+     *
+     * @param min     The smallest stored prime, or -1 if there are none.
+     * @param max     The largest stored prime, or -1 if there are none.
+     * @param count   The amount of stored primes.
+     * @param version The version of the dataset.
+     */
+    PrimeDatasetBounds(long min, long max, long count, long version) {
+        this.min = min;
+        this.max = max;
+        this.count = count;
+        this.version = version;
+    }
+
+    /**
+     * Gets the smallest stored prime.
+     *
+     * @return The smallest prime, or -1 if the dataset is empty.
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the largest stored prime.
+     *
+     * @return The largest prime, or -1 if the dataset is empty.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the amount of stored primes.
+     *
+     * @return The amount of primes.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the version of the dataset that these bounds describe.
+     *
+     * @return The version, which grows every time the dataset changes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks whether there are any stored primes.
+     *
+     * @return True if the dataset is empty.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Creates the bounds which also include a run of newly stored primes.
+     *
+     * @param first   The smallest of the new primes.
+     * @param last    The largest of the new primes.
+     * @param added   The amount of new primes.
+     * @param version The version of the dataset after the write.
+     * @return The new bounds.
+     */
+    PrimeDatasetBounds including(long first, long last, long added, long version) {
+        if (isEmpty()) {
+            return new PrimeDatasetBounds(first, last, added, version);
+        }
+
+        return new PrimeDatasetBounds(Math.min(min, first), Math.max(max, last), count + added, version);
+    }
+
+    @Override
+    public String toString() {
+        return "PrimeDatasetBounds{" +
+                "min=" + min +
+                ", max=" + max +
+                ", count=" + count +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,92 @@
+package com.llifon.prime.backend;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the cached {@link PrimeDatasetBounds} of the {@link PrimeNumberStore}, so that requests do not pay for a
+ * {@code SELECT max(...)} every time they validate a range.
+ * <p>
+ * The bounds are read from the store the first time they are needed, and are then kept up to date by whoever
+ * writes to the store, through {@link #recordWrite}. Writers which cannot describe their changes can instead
+ * {@link #invalidate()} the bounds, which are then re-read on next use.
+ */
+@Component
+public class PrimeDatasetBoundsHolder {
+
+    // The store containing the known prime numbers
+    private final PrimeNumberStore store;
+
+    // The meters which time the queries for the bounds
+    private final PrimeMetrics metrics;
+
+    // The current bounds, or null if they have to be re-read from the store
+    private volatile PrimeDatasetBounds bounds;
+
+    // The version that the next change to the dataset gets
+    private long nextVersion = 1;
+
+    /**
+     * Creates a new holder of the dataset bounds.
+     *
+     * @param store   The store containing the known prime numbers.
+     * @param metrics The meters which time the queries for the bounds.
+     */
+    public PrimeDatasetBoundsHolder(PrimeNumberStore store, PrimeMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the current bounds of the dataset. This only queries the store if the bounds are not cached.
+     *
+     * @return The bounds.
+     */
+    public PrimeDatasetBounds get() {
+        var current = this.bounds;
+        return current != null ? current : load();
+    }
+
+    /**
+     * Records that a run of primes has been written to the store.
+     *
+     * @param first The smallest of the new primes.
+     * @param last  The largest of the new primes.
+     * @param added The amount of new primes.
+     */
+    public synchronized void recordWrite(long first, long last, long added) {
+        if (added <= 0) {
+            return;
+        }
+
+        var current = this.bounds;
+        long version = nextVersion++;
+        if (current != null) {
+            this.bounds = current.including(first, last, added, version);
+        }
+    }
+
+    /**
+     * Discards the cached bounds, so that they are re-read from the store on next use.
+     */
+    public synchronized void invalidate() {
+        nextVersion++;
+        this.bounds = null;
+    }
+
+    /**
+     * Reads the bounds from the store, unless another thread already has.
+     *
+     * @return The bounds.
+     */
+    private synchronized PrimeDatasetBounds load() {
+        if (this.bounds == null) {
+            var min = this.metrics.timeQuery(PrimeMetrics.Query.SMALLEST_STORE, this.store::getSmallestPrime);
+            var max = this.metrics.timeQuery(PrimeMetrics.Query.LARGEST_STORE, this.store::getLargestPrime);
+            long count = max == null ? 0 : this.metrics.timeQuery(PrimeMetrics.Query.TOTAL_STORE, this.store::countPrimes);
+            this.bounds = new PrimeDatasetBounds(
+                    min == null ? -1 : min, max == null ? -1 : max, count, nextVersion++);
+        }
+
+        return this.bounds;
+    }
+}
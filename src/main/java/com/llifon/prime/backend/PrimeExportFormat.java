@@ -0,0 +1,51 @@
+package com.llifon.prime.backend;
+
+import java.util.Locale;
+
+/**
+ * The formats in which a range of primes can be exported (see {@link PrimeExportWriter}).
+ */
+public enum PrimeExportFormat {
+
+    // One JSON number per line
+    NDJSON("application/x-ndjson"),
+
+    // A "prime" header line, followed by one prime per line
+    CSV("text/csv"),
+
+    // The gap from the previous prime (starting from 0) of every prime, as an unsigned LEB128 varint
+    BINARY("application/octet-stream");
+
+    // The content type of the format
+    private final String mediaType;
+
+    PrimeExportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Gets the content type of the format.
+     *
+     * @return The media type.
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Finds the format with a given name, ignoring case.
+     *
+     * @param name The name of the format, such as {@code ndjson}.
+     * @return The format.
+     * @throws IllegalArgumentException if there is no format with the name.
+     */
+    public static PrimeExportFormat parse(String name) {
+        for (PrimeExportFormat format : values()) {
+            if (format.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown export format '%s', expected one of ndjson, csv or binary", name));
+    }
+}
@@ -0,0 +1,140 @@
+package com.llifon.prime.backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes a stream of ascending primes in one of the {@link PrimeExportFormat export formats}.
+ * <p>
+ * The primes are encoded into a fixed-size buffer which is written to the output whenever it fills up, so the memory
+ * used does not depend on how many primes are exported. Writes block while the client is not reading, which holds
+ * back whoever produces the primes.
+ */
+public final class PrimeExportWriter {
+
+    // The amount of bytes which are buffered before they are written to the output
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // The maximum amount of bytes that one prime takes up in any format (20 decimal digits and line break, or a varint)
+    private static final int MAX_PRIME_BYTES = PrimeBulkLoader.MAX_ROW_BYTES + 1;
+
+    // The header line of the CSV format
+    private static final byte[] CSV_HEADER = "prime\n".getBytes(StandardCharsets.US_ASCII);
+
+    // The format to encode the primes in
+    private final PrimeExportFormat format;
+
+    // The output to write the encoded primes to
+    private final OutputStream output;
+
+    // The encoded primes which have not been written yet
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+
+    // The amount of bytes in the buffer
+    private int position;
+
+    // The last prime that was encoded, which the binary format encodes the next prime relative to
+    private long previous;
+
+    // The amount of primes that were encoded
+    private long count;
+
+    /**
+     * Creates a new writer, and writes the header of the format (if it has one).
+     *
+     * @param format The format to encode the primes in.
+     * @param output The output to write the encoded primes to.
+     */
+    public PrimeExportWriter(PrimeExportFormat format, OutputStream output) {
+        this.format = format;
+        this.output = output;
+
+        if (format == PrimeExportFormat.CSV) {
+            System.arraycopy(CSV_HEADER, 0, buffer, 0, CSV_HEADER.length);
+            position = CSV_HEADER.length;
+        }
+    }
+
+    /**
+     * Encodes a chunk of primes.
+     *
+     * @param primes The primes, which must be larger than every prime written before them, in ascending order.
+     * @throws IOException if the output could not be written to.
+     */
+    public void write(List<Long> primes) throws IOException {
+        for (long prime : primes) {
+            write(prime);
+        }
+    }
+
+    /**
+     * Encodes a single prime.
+     *
+     * @param prime The prime, which must be larger than every prime written before it.
+     * @throws IOException if the output could not be written to.
+     */
+    public void write(long prime) throws IOException {
+        if (position + MAX_PRIME_BYTES > buffer.length) {
+            drain();
+        }
+
+        if (format == PrimeExportFormat.BINARY) {
+            position = encodeVarint(prime - previous, buffer, position);
+        } else {
+            position = PrimeBulkLoader.encodeRow(prime, buffer, position);
+        }
+
+        previous = prime;
+        count++;
+    }
+
+    /**
+     * Writes everything that is still buffered, and flushes the output.
+     *
+     * @throws IOException if the output could not be written to.
+     */
+    public void finish() throws IOException {
+        drain();
+        output.flush();
+    }
+
+    /**
+     * Gets the amount of primes that were encoded.
+     *
+     * @return The amount of primes.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered bytes to the output.
+     *
+     * @throws IOException if the output could not be written to.
+     */
+    private void drain() throws IOException {
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Encodes a value as an unsigned LEB128 varint: 7 bits per byte, least significant first, where the high bit of
+     * every byte but the last is set.
+     *
+     * @param value    The value, which must not be negative.
+     * @param out      The output, which must hold at least 9 bytes after {@code position}.
+     * @param position The index in {@code out} to write the varint at.
+     * @return The index in {@code out} right after the varint.
+     */
+    static int encodeVarint(long value, byte[] out, int position) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out[position++] = (byte) value;
+        return position;
+    }
+}
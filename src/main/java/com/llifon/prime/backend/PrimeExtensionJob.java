@@ -0,0 +1,223 @@
+package com.llifon.prime.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A background job which keeps extending the stored primes from the current maximum towards a configured target,
+ * while the service stays online.
+ * <p>
+ * The range is extended one segment at a time. A segment is written, flushed and then recorded as the store's
+ * checkpoint, and only then advertised through the {@link PrimeDatasetBoundsHolder}, so that requests (and
+ * {@code /max}) pick up the growing bound as soon as a segment is complete. If the job is interrupted mid-segment,
+ * the primes after the last checkpoint are deleted when it resumes, and that segment is written again from scratch.
+ * <p>
+ * The in-memory index is extended over every completed segment, so that the new primes are served from memory rather
+ * than by the COUNT and OFFSET queries of the store. When the index is disabled, the count table only covers the new
+ * primes once the target is reached.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class PrimeExtensionJob implements ApplicationRunner, DisposableBean {
+
+    // the class logger
+    private static final Logger logger = LoggerFactory.getLogger(PrimeExtensionJob.class);
+
+    // The maximum amount of primes which are handed to the store at once
+    private static final int WRITE_CHUNK_SIZE = 10000;
+
+    // The store to extend
+    private final PrimeNumberStore store;
+
+    // The cached bounds of the stored primes
+    private final PrimeDatasetBoundsHolder boundsHolder;
+
+    // The provider of the in-memory index, which is rebuilt as the store grows
+    private final PrimeIndexProvider indexProvider;
+
+    // The configuration of the job
+    private final PrimeBackendProperties.Extension settings;
+
+    // The meters which track the throughput of the extension
+    private final PrimeMetrics metrics;
+
+    // The thread which runs the job
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "prime-extension");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Whether the job has been asked to stop
+    private volatile boolean stopped;
+
+    // The value up to which the store is complete, as far as the job knows
+    private volatile long completedUpTo = -1;
+
+    /**
+     * Creates the extension job.
+     *
+     * @param store         The store to extend.
+     * @param boundsHolder  The cached bounds of the stored primes.
+     * @param indexProvider The provider of the in-memory index.
+     * @param properties    The application configuration.
+     * @param metrics       The meters which track the throughput of the extension.
+     */
+    public PrimeExtensionJob(PrimeNumberStore store,
+                             PrimeDatasetBoundsHolder boundsHolder,
+                             PrimeIndexProvider indexProvider,
+                             PrimeBackendProperties properties,
+                             PrimeMetrics metrics) {
+        this.store = store;
+        this.boundsHolder = boundsHolder;
+        this.indexProvider = indexProvider;
+        this.settings = properties.getExtension();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the value up to which the store is complete, as far as the job knows.
+     *
+     * @return The value, or -1 if the job has not started.
+     */
+    public long getCompletedUpTo() {
+        return completedUpTo;
+    }
+
+    /**
+     * Starts the job in the background, if it is enabled.
+     *
+     * @param args Not used.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+
+        executor.submit(this::extend);
+    }
+
+    /**
+     * Stops the job after the chunk it is currently writing. The segment is then completed on the next start.
+     */
+    @Override
+    public void destroy() {
+        stopped = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Extends the store segment by segment, until the target is reached or the job is stopped.
+     */
+    void extend() {
+        this.metrics.populationStarted();
+        try {
+            long completed = resume();
+            long target = settings.getTarget();
+            logger.info("Extending the known primes from {} towards {}", completed, target);
+
+            var generator = new WheelSievePrimeSequenceGenerator();
+            long[] buffer = new long[WRITE_CHUNK_SIZE];
+
+            while (!stopped && completed < target) {
+                long segmentEnd = Math.min(target, completed + settings.getSegmentSize());
+
+                var start = Instant.now();
+                long[] written = writeSegment(generator, completed + 1, segmentEnd, buffer);
+                this.store.flush();
+                this.store.markCompletedUpTo(segmentEnd);
+                var end = Instant.now();
+
+                completed = segmentEnd;
+                this.completedUpTo = completed;
+                if (written[2] > 0) {
+                    this.boundsHolder.recordWrite(written[0], written[1], written[2]);
+                    this.metrics.recordPopulated(written[2]);
+                }
+
+                this.indexProvider.extend();
+
+                logger.info("Extended the known primes up to {} with {} primes in {} ms",
+                        segmentEnd, written[2], Duration.between(start, end).toMillis());
+            }
+
+            // The index is already extended up to the target, but the count table (or a missing index) is not
+            if (completed >= target) {
+                if (this.indexProvider.getIndex() == null) {
+                    this.indexProvider.rebuild();
+                }
+                logger.info("Finished extending the known primes up to {}", target);
+            }
+        } catch (CancellationException e) {
+            logger.info("Stopped extending the known primes at {}", this.completedUpTo);
+        } catch (RuntimeException e) {
+            logger.error("Failed to extend the known primes, which will resume from {} on the next start",
+                    this.completedUpTo, e);
+        } finally {
+            this.metrics.populationFinished();
+        }
+    }
+
+    /**
+     * Finds the checkpoint to resume from, and discards anything which was written after it.
+     *
+     * @return The value up to which the store is complete.
+     */
+    private long resume() {
+        var bounds = this.boundsHolder.get();
+        long completed = this.store.getCompletedUpTo();
+
+        if (completed < 0) {
+            // Stores which were populated before checkpoints were recorded are complete up to their largest prime.
+            // A population that is started (or has failed) always leaves a checkpoint, so it is never trusted here.
+            completed = bounds.isEmpty() ? 1 : bounds.getMax();
+            this.store.markCompletedUpTo(completed);
+        } else if (!bounds.isEmpty() && bounds.getMax() > completed) {
+            logger.info("Discarding the primes after {}, which belong to a segment that was not completed", completed);
+            this.store.deleteAfter(completed);
+            this.boundsHolder.invalidate();
+        }
+
+        this.completedUpTo = completed;
+        return completed;
+    }
+
+    /**
+     * Generates and writes the primes of a segment.
+     *
+     * @param generator The generator of the primes.
+     * @param from      The first value of the segment.
+     * @param to        The last value of the segment (inclusive).
+     * @param buffer    The buffer which the primes are generated into.
+     * @return The first prime, the last prime and the amount of primes written.
+     */
+    private long[] writeSegment(LongPrimeSequenceGenerator generator, long from, long to, long[] buffer) {
+        long[] written = {-1, -1, 0};
+        generator.generateInto(from, to, true, buffer, (chunk, count) -> {
+            if (stopped) {
+                throw new CancellationException();
+            }
+
+            this.store.write(chunk, count);
+            if (written[0] < 0) {
+                written[0] = chunk[0];
+            }
+            written[1] = chunk[count - 1];
+            written[2] += count;
+        });
+        return written;
+    }
+}
@@ -0,0 +1,579 @@
+package com.llifon.prime.backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact, read-only index of every prime number in {@code [0, upperBound]}, which answers range, count and
+ * lookup queries in memory.
+ * <p>
+ * The primes are stored as a {@link WheelSieve} bitmap (one byte per 30 numbers), alongside a rank directory which
+ * holds the amount of primes before every block of {@value #RANK_BLOCK_WORDS} words. Counting the primes up to any
+ * value (rank) is therefore a directory lookup plus at most {@value #RANK_BLOCK_WORDS} popcounts, and finding the
+ * k-th prime (select) is a binary search over the directory followed by the same short scan. For the default
+ * 2..10^7 dataset the whole index is under 400KB.
+ * <p>
+ * The bitmap and directory are held in {@link LongBuffer}s so that an index can be backed by heap arrays or by any
+ * other buffer (such as a memory-mapped file) without copying.
+ */
+public final class PrimeIndex implements PrimeCounter {
+
+    // The amount of bitmap words covered by each entry of the rank directory
+    static final int RANK_BLOCK_WORDS = 8;
+
+    // The primes which are not represented on the wheel
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    // The first long of an index file ("PRIMEIDX")
+    private static final long FILE_MAGIC = 0x5052494D45494458L;
+
+    // The version of the index file format
+    private static final long FILE_VERSION = 1;
+
+    // The size of the index file header: magic, version, upper bound, word count and rank count
+    private static final int FILE_HEADER_BYTES = 5 * Long.BYTES;
+
+    // The largest amount of longs that a single mapped region can hold
+    private static final long MAX_MAPPED_LONGS = Integer.MAX_VALUE / Long.BYTES;
+
+    // The largest value covered by the index
+    private final long upperBound;
+
+    // The wheel bitmap, bit i represents WheelSieve.valueOf(0, i)
+    private final LongBuffer words;
+
+    // ranks[b] is the amount of set bits in the words before block b
+    private final LongBuffer ranks;
+
+    // The amount of primes in the index
+    private final long primeCount;
+
+    /**
+     * Creates an index over an existing bitmap and rank directory.
+     *
+     * @param upperBound The largest value covered by the bitmap.
+     * @param words      The wheel bitmap. Bits representing values past the upper bound must be cleared.
+     * @param ranks      The rank directory, as produced by {@link #buildRanks(LongBuffer)}.
+     */
+    PrimeIndex(long upperBound, LongBuffer words, LongBuffer ranks) {
+        this.upperBound = upperBound;
+        this.words = words;
+        this.ranks = ranks;
+        this.primeCount = wheelPrimesUpTo(upperBound) + ranks.get(ranks.limit() - 1);
+    }
+
+    /**
+     * Builds an index of all of the primes up to (and including) {@code upperBound}, by sieving them.
+     *
+     * @param upperBound The largest value to cover.
+     * @return The index.
+     * @throws IllegalArgumentException if the bound is negative or too large to index in memory.
+     */
+    public static PrimeIndex build(long upperBound) {
+        long[] words = new long[wordCountFor(upperBound)];
+        sieveInto(words, 0, upperBound);
+        return fromBitmap(upperBound, words);
+    }
+
+    /**
+     * Builds an index which covers more values than this one, by only sieving the values past this index.
+     *
+     * @param newUpperBound The largest value to cover, which must be at least the upper bound of this index.
+     * @return The index.
+     * @throws IllegalArgumentException if the bound is below that of this index, or too large to index in memory.
+     */
+    public PrimeIndex extendTo(long newUpperBound) {
+        if (newUpperBound < upperBound) {
+            throw new IllegalArgumentException(String.format("{newUpperBound} (%s) must be >= %s",
+                    newUpperBound, upperBound));
+        }
+
+        // Everything before the word holding the current upper bound is kept, and that word is sieved again in full
+        long[] words = new long[wordCountFor(newUpperBound)];
+        int keptWords = (int) (upperBound / WheelSieve.WHEEL / 8);
+        this.words.get(0, words, 0, keptWords);
+        sieveInto(words, (long) keptWords * 8, newUpperBound);
+
+        return fromBitmap(newUpperBound, words);
+    }
+
+    /**
+     * Sieves a part of a wheel bitmap, segment by segment.
+     *
+     * @param words      The bitmap.
+     * @param fromByte   The first byte of the bitmap to sieve, which must be the start of a word.
+     * @param upperBound The largest value to sieve.
+     */
+    private static void sieveInto(long[] words, long fromByte, long upperBound) {
+        var sieve = new WheelSieve(upperBound);
+
+        int segmentBytes = WheelSieve.DEFAULT_SEGMENT_BYTES;
+        long[] segment = new long[WheelSieve.wordsFor(segmentBytes)];
+        long totalBytes = upperBound / WheelSieve.WHEEL + 1;
+
+        for (long byteOffset = fromByte; byteOffset < totalBytes; byteOffset += segmentBytes) {
+            int bytes = (int) Math.min(segmentBytes, totalBytes - byteOffset);
+            sieve.sieve(byteOffset * WheelSieve.WHEEL, bytes, segment);
+            System.arraycopy(segment, 0, words, (int) (byteOffset >>> 3), WheelSieve.wordsFor(bytes));
+        }
+    }
+
+    /**
+     * Builds an index from a wheel bitmap of every prime up to {@code upperBound}, such as one assembled from
+     * stored primes. The primes 2, 3 and 5 are implied by the bound.
+     *
+     * @param upperBound The largest value covered by the bitmap.
+     * @param words      The wheel bitmap, which gets its bits past the upper bound cleared.
+     * @return The index.
+     */
+    static PrimeIndex fromBitmap(long upperBound, long[] words) {
+        clearBitsAfter(words, upperBound);
+
+        var wordBuffer = LongBuffer.wrap(words);
+        return new PrimeIndex(upperBound, wordBuffer, buildRanks(wordBuffer));
+    }
+
+    /**
+     * Memory-maps an index which was written by {@link #save(Path)}. The index reads straight from the page cache,
+     * so it is ready as soon as the file is mapped, and costs no heap no matter how large it is.
+     *
+     * @param file The index file.
+     * @return The index.
+     * @throws IOException if the file cannot be read, or is not an index file.
+     */
+    public static PrimeIndex map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException(file + " is not a prime index file");
+                }
+            }
+            header.flip();
+
+            if (header.getLong() != FILE_MAGIC || header.getLong() != FILE_VERSION) {
+                throw new IOException(file + " is not a prime index file");
+            }
+
+            long upperBound = header.getLong();
+            long wordCount = header.getLong();
+            long rankCount = header.getLong();
+
+            long wordBytes = wordCount * Long.BYTES;
+            if (wordCount != wordCountFor(upperBound) || rankCount != (wordCount + RANK_BLOCK_WORDS - 1) / RANK_BLOCK_WORDS + 1
+                    || channel.size() != FILE_HEADER_BYTES + wordBytes + rankCount * Long.BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+
+            // The mappings stay valid after the channel is closed
+            var words = channel.map(FileChannel.MapMode.READ_ONLY, FILE_HEADER_BYTES, wordBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            var ranks = channel.map(FileChannel.MapMode.READ_ONLY, FILE_HEADER_BYTES + wordBytes, rankCount * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            return new PrimeIndex(upperBound, words, ranks);
+        }
+    }
+
+    /**
+     * Writes this index to a file which can later be {@link #map(Path) mapped}. The file is written next to its
+     * destination first, and then moved into place, so a crash never leaves a partial index behind.
+     *
+     * @param file The index file.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalStateException if the index is too large to be mapped.
+     */
+    public void save(Path file) throws IOException {
+        long wordCount = words.limit();
+        long rankCount = ranks.limit();
+        if (wordCount > MAX_MAPPED_LONGS) {
+            throw new IllegalStateException(String.format("The index up to %s is too large to be mapped", upperBound));
+        }
+
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(FILE_MAGIC).putLong(FILE_VERSION).putLong(upperBound).putLong(wordCount).putLong(rankCount);
+
+            for (var source : new LongBuffer[]{words, ranks}) {
+                for (int i = 0; i < source.limit(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        writeFully(channel, buffer);
+                    }
+                    buffer.putLong(source.get(i));
+                }
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets the largest value covered by this index.
+     *
+     * @return The upper bound.
+     */
+    @Override
+    public long getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Gets the amount of primes in this index.
+     *
+     * @return The amount of primes up to the upper bound.
+     */
+    public long getPrimeCount() {
+        return primeCount;
+    }
+
+    /**
+     * Gets the largest prime in this index.
+     *
+     * @return The largest prime, or null if the index is empty.
+     */
+    public Long getLargestPrime() {
+        return primeCount == 0 ? null : select(primeCount - 1);
+    }
+
+    /**
+     * Counts the primes which are less than or equal to {@code x}, i.e. the prime-counting function pi(x).
+     *
+     * @param x The value, which must be covered by the index.
+     * @return The amount of primes {@code <= x}.
+     */
+    @Override
+    public long countUpTo(long x) {
+        checkCovered(x);
+
+        if (x < 7) {
+            return wheelPrimesUpTo(x);
+        }
+
+        return WHEEL_PRIMES.length + rank(WheelSieve.bitIndexAtOrAfter(0, x + 1));
+    }
+
+    /**
+     * Finds the k-th prime (0-based) of the index, such that {@code select(0) == 2}.
+     *
+     * @param k The rank of the prime.
+     * @return The prime.
+     * @throws IllegalArgumentException if the index does not hold that many primes.
+     */
+    @Override
+    public long select(long k) {
+        if (k < 0 || k >= primeCount) {
+            throw new IllegalArgumentException(String.format("{k} (%s) must be within [0, %s)", k, primeCount));
+        }
+
+        if (k < WHEEL_PRIMES.length) {
+            return WHEEL_PRIMES[(int) k];
+        }
+
+        return WheelSieve.valueOf(0, selectBit(k - WHEEL_PRIMES.length));
+    }
+
+    /**
+     * Checks whether a number is prime.
+     *
+     * @param n The number, which must be covered by the index.
+     * @return {@code true} if the number is a prime number.
+     */
+    public boolean isPrime(long n) {
+        checkCovered(n);
+
+        if (n < 7) {
+            return n == 2 || n == 3 || n == 5;
+        }
+
+        long bit = WheelSieve.bitIndexAtOrAfter(0, n);
+        return WheelSieve.valueOf(0, bit) == n && (words.get((int) (bit >>> 6)) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Finds the smallest prime which is strictly greater than {@code n}.
+     *
+     * @param n The value to search after.
+     * @return The next prime, or -1 if there is no larger prime within the index.
+     */
+    public long nextPrime(long n) {
+        if (n >= upperBound) {
+            return -1;
+        }
+
+        long rank = n < 2 ? 0 : countUpTo(n);
+        return rank < primeCount ? select(rank) : -1;
+    }
+
+    /**
+     * Finds the largest prime which is strictly less than {@code n}.
+     *
+     * @param n The value to search before, where {@code n - 1} must be covered by the index.
+     * @return The previous prime, or -1 if there is no smaller prime.
+     */
+    public long previousPrime(long n) {
+        if (n <= 2) {
+            return -1;
+        }
+
+        long rank = countUpTo(n - 1);
+        return rank == 0 ? -1 : select(rank - 1);
+    }
+
+    /**
+     * Copies a "page" of the primes within a range, skipping the first {@code skip} primes of the range.
+     *
+     * @param from  The first value in the range.
+     * @param to    The last value in the range (clamped to the upper bound of the index).
+     * @param skip  The amount of primes of the range to skip.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes of the page, in ascending order.
+     */
+    public long[] page(long from, long to, long skip, int limit) {
+        to = Math.min(to, upperBound);
+        if (from > to || limit <= 0 || skip < 0) {
+            return new long[0];
+        }
+
+        long startRank = (from <= 0 ? 0 : countUpTo(from - 1)) + skip;
+        long available = countUpTo(to) - startRank;
+        if (available <= 0) {
+            return new long[0];
+        }
+
+        long[] primes = new long[(int) Math.min(limit, available)];
+        int count = 0;
+
+        // The first few primes are not on the wheel
+        while (count < primes.length && startRank + count < WHEEL_PRIMES.length) {
+            primes[count] = WHEEL_PRIMES[(int) (startRank + count)];
+            count++;
+        }
+
+        if (count < primes.length) {
+            long bit = selectBit(startRank + count - WHEEL_PRIMES.length);
+            while (true) {
+                primes[count++] = WheelSieve.valueOf(0, bit);
+                if (count == primes.length) {
+                    break;
+                }
+                bit = nextSetBit(bit + 1);
+            }
+        }
+
+        return primes;
+    }
+
+    /**
+     * Copies the wheel bitmap of this index onto the heap, so that more primes can be added to it.
+     *
+     * @param minWords The minimum length of the copy.
+     * @return The copy, which is zero-filled past the end of this index.
+     */
+    long[] copyBitmap(int minWords) {
+        long[] copy = new long[Math.max(minWords, words.limit())];
+        words.get(0, copy, 0, words.limit());
+        return copy;
+    }
+
+    /**
+     * Calculates the amount of bitmap words needed to cover all values up to {@code upperBound}.
+     *
+     * @param upperBound The largest value to cover.
+     * @return The amount of words.
+     * @throws IllegalArgumentException if the bound is negative or too large to index in memory.
+     */
+    static int wordCountFor(long upperBound) {
+        if (upperBound < 0) {
+            throw new IllegalArgumentException(String.format("{upperBound} (%s) must be >= 0", upperBound));
+        }
+
+        long words = (upperBound / WheelSieve.WHEEL) / 8 + 1;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("{upperBound} (%s) is too large to index in memory", upperBound));
+        }
+
+        return (int) words;
+    }
+
+    /**
+     * Clears every bit of a wheel bitmap which represents a value larger than {@code upperBound}.
+     *
+     * @param words      The bitmap.
+     * @param upperBound The largest value to keep.
+     */
+    static void clearBitsAfter(long[] words, long upperBound) {
+        long firstCleared = WheelSieve.bitIndexAtOrAfter(0, upperBound + 1);
+        int wordIndex = (int) (firstCleared >>> 6);
+        if (wordIndex < words.length) {
+            int remainder = (int) (firstCleared & 63);
+            words[wordIndex] &= remainder == 0 ? 0 : (1L << remainder) - 1;
+            for (int i = wordIndex + 1; i < words.length; i++) {
+                words[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Builds the rank directory for a wheel bitmap. Entry b holds the amount of set bits in the words before block b,
+     * and the last entry holds the total amount of set bits.
+     *
+     * @param words The bitmap.
+     * @return The rank directory.
+     */
+    static LongBuffer buildRanks(LongBuffer words) {
+        int wordCount = words.limit();
+        long[] ranks = new long[(wordCount + RANK_BLOCK_WORDS - 1) / RANK_BLOCK_WORDS + 1];
+
+        long total = 0;
+        for (int i = 0; i < wordCount; i++) {
+            if (i % RANK_BLOCK_WORDS == 0) {
+                ranks[i / RANK_BLOCK_WORDS] = total;
+            }
+            total += Long.bitCount(words.get(i));
+        }
+        ranks[ranks.length - 1] = total;
+
+        return LongBuffer.wrap(ranks);
+    }
+
+    /**
+     * Counts the set bits of the bitmap before the given bit index.
+     *
+     * @param bitIndex The (exclusive) end bit.
+     * @return The amount of set bits.
+     */
+    private long rank(long bitIndex) {
+        int wordIndex = (int) (bitIndex >>> 6);
+        int wordCount = words.limit();
+        if (wordIndex >= wordCount) {
+            return ranks.get(ranks.limit() - 1);
+        }
+
+        int block = wordIndex / RANK_BLOCK_WORDS;
+        long rank = ranks.get(block);
+        for (int w = block * RANK_BLOCK_WORDS; w < wordIndex; w++) {
+            rank += Long.bitCount(words.get(w));
+        }
+
+        int remainder = (int) (bitIndex & 63);
+        if (remainder != 0) {
+            rank += Long.bitCount(words.get(wordIndex) & ((1L << remainder) - 1));
+        }
+
+        return rank;
+    }
+
+    /**
+     * Finds the index of the k-th (0-based) set bit of the bitmap.
+     *
+     * @param k The rank of the bit, which must be less than the amount of set bits.
+     * @return The bit index.
+     */
+    private long selectBit(long k) {
+        // Finds the last block whose rank is <= k
+        int low = 0;
+        int high = ranks.limit() - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (ranks.get(middle) <= k) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        long remaining = k - ranks.get(low);
+        int w = low * RANK_BLOCK_WORDS;
+        while (true) {
+            long word = words.get(w);
+            int bits = Long.bitCount(word);
+            if (remaining < bits) {
+                for (long i = 0; i < remaining; i++) {
+                    word &= word - 1;
+                }
+                return ((long) w << 6) + Long.numberOfTrailingZeros(word);
+            }
+
+            remaining -= bits;
+            w++;
+        }
+    }
+
+    /**
+     * Finds the next set bit of the bitmap.
+     *
+     * @param fromIndex The bit index to start searching from (inclusive).
+     * @return The index of the next set bit, or -1 if there are none.
+     */
+    private long nextSetBit(long fromIndex) {
+        int wordIndex = (int) (fromIndex >>> 6);
+        int wordCount = words.limit();
+        if (wordIndex >= wordCount) {
+            return -1;
+        }
+
+        long word = words.get(wordIndex) & (-1L << fromIndex);
+        while (word == 0) {
+            if (++wordIndex >= wordCount) {
+                return -1;
+            }
+            word = words.get(wordIndex);
+        }
+
+        return ((long) wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Writes the contents of a buffer to a channel, and clears the buffer.
+     *
+     * @param channel The channel.
+     * @param buffer  The buffer, in write mode.
+     * @throws IOException if the write failed.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Counts the primes 2, 3 and 5 which are less than or equal to {@code x}.
+     *
+     * @param x The value.
+     * @return The amount of wheel primes {@code <= x}.
+     */
+    private static long wheelPrimesUpTo(long x) {
+        int count = 0;
+        for (long prime : WHEEL_PRIMES) {
+            if (prime <= x) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks that a value is covered by this index.
+     *
+     * @param n The value.
+     * @throws IllegalArgumentException if the value is past the upper bound.
+     */
+    private void checkCovered(long n) {
+        if (n > upperBound) {
+            throw new IllegalArgumentException(String.format("%s is outside of the prime index [0, %s]", n, upperBound));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.llifon.prime.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Owns the in-memory {@link PrimeIndex} of the known primes.
+ * <p>
+ * The index is built once the {@link DatabaseInitializer} has finished populating the database, and covers every
+ * value up to the largest prime in the repository. Requests which fall within the index are then served from memory,
+ * while the repository remains the persistent source of truth and the fallback for anything the index does not cover.
+ * <p>
+ * When the index is disabled, a much smaller {@link PrimeCountTable} is built instead, so that the repository can
+ * still be paged without counting the rows of every range. Stores which already hold an index, such as the
+ * {@link FilePrimeNumberStore}, have it used as-is. As the store grows, an index can be {@link #extend() extended} by
+ * sieving only the new values, while the count table is only rebuilt on request.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class PrimeIndexProvider implements ApplicationRunner {
+
+    // the class logger
+    private static final Logger logger = LoggerFactory.getLogger(PrimeIndexProvider.class);
+
+    // The store containing the known prime numbers
+    private final PrimeNumberStore store;
+
+    // The cached bounds of the known prime numbers
+    private final PrimeDatasetBoundsHolder boundsHolder;
+
+    // Whether the index should be built at all
+    private final boolean enabled;
+
+    // The current index, or null if it has not been built
+    private volatile PrimeIndex index;
+
+    // The current prime counter, which is the index itself when there is one
+    private volatile PrimeCounter counter;
+
+    /**
+     * Creates a new index provider.
+     *
+     * @param store        The store containing the known prime numbers.
+     * @param boundsHolder The cached bounds of the known prime numbers.
+     * @param properties   The application configuration.
+     */
+    public PrimeIndexProvider(PrimeNumberStore store,
+                              PrimeDatasetBoundsHolder boundsHolder,
+                              PrimeBackendProperties properties) {
+        this.store = store;
+        this.boundsHolder = boundsHolder;
+        this.enabled = properties.getIndex().isEnabled();
+    }
+
+    /**
+     * Gets the current index.
+     *
+     * @return The index, or null if the index is disabled or has not been built yet.
+     */
+    public PrimeIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the current prime counter.
+     *
+     * @return The counter, or null if it has not been built yet.
+     */
+    public PrimeCounter getCounter() {
+        return counter;
+    }
+
+    /**
+     * Builds the index at startup, after the database has been populated.
+     *
+     * @param args Not used.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    /**
+     * Extends the index so that it covers every value up to the largest prime in the repository, after primes have
+     * been added past it. Only the new values are sieved. The count table, and an index which has not been built yet,
+     * are left as they are until the next {@link #rebuild()}.
+     */
+    public void extend() {
+        if (this.store.getIndex() != null) {
+            rebuild();
+            return;
+        }
+
+        var current = this.index;
+        long largestPrime = this.boundsHolder.get().getMax();
+        if (current == null || largestPrime <= current.getUpperBound()) {
+            return;
+        }
+
+        var start = Instant.now();
+        var extended = current.extendTo(largestPrime);
+        this.index = extended;
+        this.counter = extended;
+        var end = Instant.now();
+
+        logger.info("Extended the in-memory prime index from {} to {} in {} ms",
+                current.getUpperBound(), largestPrime, Duration.between(start, end).toMillis());
+    }
+
+    /**
+     * Re-builds the index (or count table) so that it covers every value up to the largest prime in the repository.
+     */
+    public void rebuild() {
+        var bounds = this.boundsHolder.get();
+        if (bounds.isEmpty()) {
+            logger.info("Skipping the in-memory prime index - there are no known primes");
+            this.index = null;
+            this.counter = null;
+            return;
+        }
+
+        long largestPrime = bounds.getMax();
+        var stored = this.store.getIndex();
+        if (stored != null && stored.getUpperBound() >= largestPrime) {
+            // The store already holds a complete index (such as a mapped file), which costs nothing to serve from
+            this.index = stored;
+            this.counter = stored;
+            logger.info("Using the prime index of the store up to {}", stored.getUpperBound());
+            return;
+        }
+
+        var start = Instant.now();
+        if (enabled) {
+            var built = PrimeIndex.build(largestPrime);
+            this.index = built;
+            this.counter = built;
+        } else {
+            this.index = null;
+            this.counter = PrimeCountTable.build(largestPrime);
+        }
+        var end = Instant.now();
+
+        logger.info("Built the in-memory prime {} up to {} in {} ms",
+                enabled ? "index" : "count table", largestPrime, Duration.between(start, end).toMillis());
+    }
+}
@@ -0,0 +1,132 @@
+package com.llifon.prime.backend;
+
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * The service for answering questions about single numbers: whether they are prime, and which primes surround them.
+ * <p>
+ * Numbers which are covered by the in-memory {@link PrimeIndex} are answered from it with a rank/select lookup. Every
+ * other number is answered with the deterministic {@link MillerRabin} test, which is exact for any {@code long} and
+ * cheaper than a database round trip, so the database itself is never queried.
+ */
+@Service
+public class PrimeLookupService {
+
+    // The maximum amount of numbers that a single batched request may ask about
+    static final int MAX_BATCH_SIZE = 10000;
+
+    // Provides the in-memory index of the known prime numbers, when one is available
+    private final PrimeIndexProvider indexProvider;
+
+    /**
+     * Initializes a new instance of the prime lookup service.
+     *
+     * @param indexProvider Provides the in-memory index of the known prime numbers
+     */
+    public PrimeLookupService(PrimeIndexProvider indexProvider) {
+        this.indexProvider = indexProvider;
+    }
+
+    /**
+     * Checks whether a number is prime.
+     *
+     * @param n The number.
+     * @return {@code true} if the number is a prime number.
+     */
+    public boolean isPrime(long n) {
+        var index = this.indexProvider.getIndex();
+        if (index != null && n >= 0 && n <= index.getUpperBound()) {
+            return index.isPrime(n);
+        }
+
+        return MillerRabin.isPrime(n);
+    }
+
+    /**
+     * Finds the smallest prime which is strictly greater than a number.
+     *
+     * @param n The number to search after.
+     * @return The next prime, or -1 if there is no larger prime within the range of {@code long}.
+     */
+    public long nextPrime(long n) {
+        if (n < 2) {
+            return 2;
+        }
+
+        var index = this.indexProvider.getIndex();
+        if (index != null && n < index.getUpperBound()) {
+            long prime = index.nextPrime(n);
+            if (prime >= 0) {
+                return prime;
+            }
+
+            // There are no more primes within the index, so the search continues right after it
+            n = index.getUpperBound();
+        }
+
+        if (n == Long.MAX_VALUE) {
+            return -1;
+        }
+
+        var primes = new MillerRabinPrimeSequenceGenerator().generateLongs(n + 1, Long.MAX_VALUE, true);
+        return primes.hasNext() ? primes.nextLong() : -1;
+    }
+
+    /**
+     * Finds the largest prime which is strictly less than a number.
+     *
+     * @param n The number to search before.
+     * @return The previous prime, or -1 if there is no smaller prime.
+     */
+    public long previousPrime(long n) {
+        if (n <= 2) {
+            return -1;
+        }
+
+        var index = this.indexProvider.getIndex();
+        if (index != null && n - 1 <= index.getUpperBound()) {
+            return index.previousPrime(n);
+        }
+
+        // Prime gaps below 2^63 are at most a few thousand numbers, most of which fail the trial division
+        for (long candidate = n - 1; candidate >= 2; candidate--) {
+            if (MillerRabin.isPrime(candidate)) {
+                return candidate;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Answers the same question for every number of a batch.
+     *
+     * @param numbers The numbers.
+     * @param lookup  Answers the question for a single number.
+     * @param <T>     The type of the answer.
+     * @return The answers, in the same order as the numbers.
+     * @throws IllegalArgumentException if the batch is larger than {@value #MAX_BATCH_SIZE} numbers.
+     */
+    public <T> List<T> lookupAll(Collection<Long> numbers, LongFunction<T> lookup) {
+        if (numbers.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "A batch may contain at most %s numbers, but %s were requested", MAX_BATCH_SIZE, numbers.size()));
+        }
+
+        List<T> answers = new ArrayList<>(numbers.size());
+        for (Long n : numbers) {
+            if (n == null) {
+                throw new IllegalArgumentException("A batch may not contain null numbers");
+            }
+            answers.add(lookup.apply(n));
+        }
+
+        return answers;
+    }
+
+}
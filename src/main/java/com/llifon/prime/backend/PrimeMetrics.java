@@ -0,0 +1,220 @@
+package com.llifon.prime.backend;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The meters of the hot paths of the backend, which Actuator exposes at {@code /actuator/metrics} and
+ * {@code /actuator/prometheus}.
+ * <p>
+ * Every timer and distribution publishes its p50, p99 and p99.9, along with a histogram so that percentiles can also be
+ * aggregated across instances. The end-to-end latency of every endpoint is recorded by Spring as
+ * {@code http.server.requests}.
+ */
+@Component
+public class PrimeMetrics {
+
+    // The percentiles published by every timer and distribution
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    // The widest range whose width gets a histogram bucket of its own, wider ones are only counted in the last bucket
+    private static final double MAX_EXPECTED_RANGE_WIDTH = 1e12;
+
+    // The largest page size which gets a histogram bucket of its own
+    private static final double MAX_EXPECTED_PAGE_SIZE = 1e5;
+
+    // The registry that the meters are registered with
+    private final MeterRegistry registry;
+
+    // The timers of the queries for the stored primes, which are all registered up front
+    private final Map<Query, Timer> queryTimers = new EnumMap<>(Query.class);
+
+    // The timers of the serialization of range responses, by format
+    private final Map<String, Timer> serializationTimers = new ConcurrentHashMap<>();
+
+    // The amount of numbers spanned by range requests
+    private final DistributionSummary rangeWidth;
+
+    // The page size of range requests
+    private final DistributionSummary pageSize;
+
+    // The amount of primes which have been generated and written while populating or extending the store
+    private final Counter populatedPrimes;
+
+    // The amount of primes written by the population which is currently running
+    private final AtomicLong runPrimes = new AtomicLong();
+
+    // The System.nanoTime() at which the current population started, or 0 if none is running
+    private final AtomicLong runStart = new AtomicLong();
+
+    /**
+     * Creates the meters.
+     *
+     * @param registry The registry that the meters are registered with.
+     */
+    public PrimeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        this.rangeWidth = DistributionSummary.builder("prime.request.range.width")
+                .description("The amount of numbers spanned by range requests")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(MAX_EXPECTED_RANGE_WIDTH)
+                .register(registry);
+
+        this.pageSize = DistributionSummary.builder("prime.request.page.size")
+                .description("The page size of range requests")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(MAX_EXPECTED_PAGE_SIZE)
+                .register(registry);
+
+        for (Query query : Query.values()) {
+            queryTimers.put(query, Timer.builder("prime.store.query")
+                    .description("The time taken to answer queries for the stored primes")
+                    .tag("operation", query.operation)
+                    .tag("source", query.source)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+
+        this.populatedPrimes = Counter.builder("prime.population.primes")
+                .description("The amount of primes generated and written to the store")
+                .register(registry);
+
+        Gauge.builder("prime.population.rate", this, PrimeMetrics::populationRate)
+                .description("The amount of primes generated and written per second by the running population")
+                .baseUnit("primes/s")
+                .register(registry);
+    }
+
+    /**
+     * Times a query for the stored primes.
+     *
+     * @param query  The kind of query, and where it is answered from.
+     * @param action The query.
+     * @param <T>    The type of the result.
+     * @return The result of the query.
+     */
+    public <T> T timeQuery(Query query, Supplier<T> action) {
+        return queryTimers.get(query).record(action);
+    }
+
+    /**
+     * Records the time taken to serialize a range response.
+     *
+     * @param format The format, such as {@code json}.
+     * @param nanos  The time taken, in nanoseconds.
+     */
+    public void recordSerialization(String format, long nanos) {
+        serializationTimers.computeIfAbsent(format, key -> Timer.builder("prime.response.serialization")
+                .description("The time taken to serialize range responses")
+                .tag("format", format)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the shape of a range request.
+     *
+     * @param from The start of the range.
+     * @param to   The end of the range.
+     * @param size The page size.
+     */
+    public void recordRequest(long from, long to, long size) {
+        rangeWidth.record(Math.max(0, to - from + 1));
+        pageSize.record(size);
+    }
+
+    /**
+     * Records that a population (or extension) of the store has started.
+     */
+    public void populationStarted() {
+        runPrimes.set(0);
+        runStart.set(System.nanoTime());
+    }
+
+    /**
+     * Records that primes have been generated and written to the store.
+     *
+     * @param count The amount of primes.
+     */
+    public void recordPopulated(long count) {
+        runPrimes.addAndGet(count);
+        populatedPrimes.increment(count);
+    }
+
+    /**
+     * Records that the running population (or extension) of the store has finished.
+     */
+    public void populationFinished() {
+        runStart.set(0);
+    }
+
+    /**
+     * Calculates the throughput of the running population.
+     *
+     * @return The amount of primes written per second, or 0 if no population is running.
+     */
+    private double populationRate() {
+        long start = runStart.get();
+        if (start == 0) {
+            return 0;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        return elapsed <= 0 ? 0 : runPrimes.get() * 1e9 / elapsed;
+    }
+
+    /**
+     * The queries for the stored primes which are timed, by the operation and where it is answered from.
+     */
+    public enum Query {
+
+        // Counting the primes of a range
+        COUNT_MEMORY("count", "memory"),
+        COUNT_STORE("count", "store"),
+
+        // Reading a page of primes by its index
+        PAGE_MEMORY("page", "memory"),
+        PAGE_STORE("page", "store"),
+
+        // Reading the primes after a cursor
+        AFTER_MEMORY("after", "memory"),
+        AFTER_STORE("after", "store"),
+
+        // Generating the primes beyond the stored ones
+        GENERATE_ON_DEMAND("generate", "on-demand"),
+
+        // Reading the bounds of the stored primes
+        SMALLEST_STORE("smallest", "store"),
+        LARGEST_STORE("largest", "store"),
+        TOTAL_STORE("total", "store");
+
+        // The value of the operation tag
+        private final String operation;
+
+        // The value of the source tag
+        private final String source;
+
+        Query(String operation, String source) {
+            this.operation = operation;
+            this.source = source;
+        }
+    }
+}
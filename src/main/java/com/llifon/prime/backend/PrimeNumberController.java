@@ -1,16 +1,30 @@
 package com.llifon.prime.backend;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /***
@@ -25,19 +39,58 @@ public class PrimeNumberController {
     // The URL segment for generating prime number ranges.
     private static final String MAX_API = "/max";
 
+    // The URL segment for exporting whole prime number ranges.
+    private static final String EXPORT_API = PRIME_API + "/export";
+
+    // The URL segment for checking whether numbers are prime.
+    private static final String IS_PRIME_API = "/is-prime";
+
+    // The URL segment for finding the primes which follow numbers.
+    private static final String NEXT_PRIME_API = "/next-prime";
+
+    // The URL segment for finding the primes which precede numbers.
+    private static final String PREVIOUS_PRIME_API = "/prev-prime";
+
+    // The header which reports the time spent in each phase of a range request.
+    private static final String SERVER_TIMING = "Server-Timing";
+
     // the class logger
     private static final Logger logger = LoggerFactory.getLogger(PrimeNumberController.class);
 
     // The service model for generating prime number data.
     private final PrimeNumberService service;
 
+    // The service model for answering questions about single numbers.
+    private final PrimeLookupService lookupService;
+
+    // The cache of serialized range responses.
+    private final PrimePageCache cache;
+
+    // Serializes the JSON range responses.
+    private final ObjectMapper objectMapper;
+
+    // The meters which time the serialization of range responses.
+    private final PrimeMetrics metrics;
+
     /**
      * Initializes a new Prime Number REST API controller.
      *
-     * @param service The number service.
+     * @param service       The number service.
+     * @param lookupService The single number lookup service.
+     * @param cache         The cache of serialized range responses.
+     * @param objectMapper  The JSON serializer.
+     * @param metrics       The meters which time the serialization of range responses.
      */
-    public PrimeNumberController(PrimeNumberService service) {
+    public PrimeNumberController(PrimeNumberService service,
+                                 PrimeLookupService lookupService,
+                                 PrimePageCache cache,
+                                 ObjectMapper objectMapper,
+                                 PrimeMetrics metrics) {
         this.service = service;
+        this.lookupService = lookupService;
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
     }
 
     /**
@@ -70,15 +123,236 @@ public class PrimeNumberController {
         return new ResponseEntity<>(map, HttpStatus.OK);
     }
 
-    @GetMapping(value = PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(value = PRIME_API, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public ResponseEntity<byte[]> providePrimeSequence(@RequestParam(name = "from", defaultValue = "2") Long from,
+                                                       @RequestParam(name = "to") Long to,
+                                                       @RequestParam(name = "page", defaultValue = "0") Long page,
+                                                       @RequestParam(name = "size", defaultValue = "100") Long size,
+                                                       @RequestParam(name = "after", required = false) String after,
+                                                       @RequestParam(name = "timings", defaultValue = "false") boolean timings,
+                                                       @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
+            throws IOException {
+
+        boolean binary = prefersBinary(accept);
+        var key = new PrimePageCache.Key(from, to, page, size, after, binary);
+
+        // The version is read first, so that a response built while the primes change is not cached as the new one
+        long version = this.cache.currentVersion();
+        // Responses which carry their timings are unique to the request, so they are neither served from nor put in the cache
+        byte[] body = timings ? null : this.cache.get(key);
+        String serverTiming;
+        if (body == null) {
+            var phases = new PrimeRequestTimings();
+            // A cursor takes precedence over the page index, as it can seek straight to the page
+            var ret = after == null
+                    ? this.service.requestPagedPrimeNumbers(from, to, size.intValue(), page.intValue(), phases)
+                    : this.service.requestPrimesAfterCursor(from, to, after, size.intValue(), phases);
+            logger.info("Serving client request of {}", ret.getRequestInfo());
+
+            if (!timings) {
+                ret.setTimings(null);
+            }
+            body = serialize(ret, binary);
+            phases.lap(PrimeRequestTimings.SERIALIZE);
+            serverTiming = phases.toServerTiming();
+
+            if (!timings) {
+                this.cache.put(key, version, body);
+            }
+        } else {
+            logger.info("Serving client request of from={}, to={}, page={}, size={} from the cache", from, to, page, size);
+            serverTiming = "cache;desc=\"hit\"";
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(binary ? MediaType.APPLICATION_OCTET_STREAM : MediaType.APPLICATION_JSON);
+        headers.set(SERVER_TIMING, serverTiming);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @GetMapping(value = EXPORT_API)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public ResponseEntity<StreamingResponseBody> exportPrimeSequence(@RequestParam(name = "from", defaultValue = "2") Long from,
+                                                                     @RequestParam(name = "to") Long to,
+                                                                     @RequestParam(name = "format", defaultValue = "ndjson") String format) {
+
+        var exportFormat = PrimeExportFormat.parse(format);
+        var body = this.service.exportPrimes(from, to, exportFormat);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(exportFormat.getMediaType()));
+
+        logger.info("Serving client with an {} export of the primes from {} to {}", exportFormat, from, to);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @GetMapping(value = IS_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public Map<String, Object> provideIsPrime(@RequestParam(name = "n") Long n) {
+        return isPrimeAnswer(n);
+    }
+
+    @PostMapping(value = IS_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
     @CrossOrigin(origins = "*") // TODO: Remove this in production
-    public PrimeNumberResponse providePrimeSequence(@RequestParam(name = "from", defaultValue = "2") Long from,
-                                                    @RequestParam(name = "to") Long to,
-                                                    @RequestParam(name = "page", defaultValue = "0") Long page,
-                                                    @RequestParam(name = "size", defaultValue = "100") Long size) {
-
-        var ret = this.service.requestPagedPrimeNumbers(from, to, size.intValue(), page.intValue());
-        logger.info("Serving client request of {}", ret.getRequestInfo());
-        return ret;
+    public List<Map<String, Object>> provideIsPrimeBatch(InputStream body) throws IOException {
+        var numbers = readBatch(body);
+        logger.info("Serving client with the primality of {} numbers", numbers.size());
+        return this.lookupService.lookupAll(numbers, this::isPrimeAnswer);
+    }
+
+    @GetMapping(value = NEXT_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public Map<String, Object> provideNextPrime(@RequestParam(name = "n") Long n) {
+        return nextPrimeAnswer(n);
+    }
+
+    @PostMapping(value = NEXT_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public List<Map<String, Object>> provideNextPrimeBatch(InputStream body) throws IOException {
+        var numbers = readBatch(body);
+        logger.info("Serving client with the next primes of {} numbers", numbers.size());
+        return this.lookupService.lookupAll(numbers, this::nextPrimeAnswer);
+    }
+
+    @GetMapping(value = PREVIOUS_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public Map<String, Object> providePreviousPrime(@RequestParam(name = "n") Long n) {
+        return previousPrimeAnswer(n);
+    }
+
+    @PostMapping(value = PREVIOUS_PRIME_API, produces = MediaType.APPLICATION_JSON_VALUE)
+    @CrossOrigin(origins = "*") // TODO: Remove this in production
+    public List<Map<String, Object>> providePreviousPrimeBatch(InputStream body) throws IOException {
+        var numbers = readBatch(body);
+        logger.info("Serving client with the previous primes of {} numbers", numbers.size());
+        return this.lookupService.lookupAll(numbers, this::previousPrimeAnswer);
+    }
+
+    /**
+     * Answers whether a number is prime.
+     *
+     * @param n The number.
+     * @return The number along with its primality.
+     */
+    private Map<String, Object> isPrimeAnswer(long n) {
+        return answer(n, "isPrime", this.lookupService.isPrime(n));
+    }
+
+    /**
+     * Answers which prime follows a number.
+     *
+     * @param n The number.
+     * @return The number along with the next prime, which is null if there is none.
+     */
+    private Map<String, Object> nextPrimeAnswer(long n) {
+        long prime = this.lookupService.nextPrime(n);
+        return answer(n, "nextPrime", prime < 0 ? null : prime);
+    }
+
+    /**
+     * Answers which prime precedes a number.
+     *
+     * @param n The number.
+     * @return The number along with the previous prime, which is null if there is none.
+     */
+    private Map<String, Object> previousPrimeAnswer(long n) {
+        long prime = this.lookupService.previousPrime(n);
+        return answer(n, "previousPrime", prime < 0 ? null : prime);
+    }
+
+    /**
+     * Reads the JSON array of numbers of a batched request, one number at a time, so that an oversized batch is
+     * rejected as soon as it passes the limit rather than after all of it has been read into memory.
+     *
+     * @param body The request body.
+     * @return The numbers of the batch.
+     * @throws IOException              if the request body could not be read.
+     * @throws IllegalArgumentException if the body is not an array of whole numbers, or holds too many of them.
+     */
+    private List<Long> readBatch(InputStream body) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (JsonParser parser = this.objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("A batch must be a JSON array of numbers");
+            }
+
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw new IllegalArgumentException("A batch may only contain whole numbers");
+                }
+                if (numbers.size() == PrimeLookupService.MAX_BATCH_SIZE) {
+                    throw new IllegalArgumentException(String.format(
+                            "A batch may contain at most %s numbers", PrimeLookupService.MAX_BATCH_SIZE));
+                }
+                numbers.add(parser.getLongValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON request: " + e.getOriginalMessage());
+        }
+
+        return numbers;
+    }
+
+    /**
+     * Checks whether the client prefers the binary encoding of range responses over JSON.
+     *
+     * @param accept The Accept header of the request, or null.
+     * @return True if the binary encoding comes first in the Accept header.
+     */
+    private static boolean prefersBinary(String accept) {
+        if (accept == null) {
+            return false;
+        }
+
+        List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+            if (mediaType.includes(MediaType.APPLICATION_OCTET_STREAM)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Serializes a range response.
+     *
+     * @param response The response.
+     * @param binary   Whether to use the binary encoding rather than JSON.
+     * @return The serialized response.
+     * @throws IOException if the response could not be serialized.
+     */
+    private byte[] serialize(PrimeNumberResponse response, boolean binary) throws IOException {
+        long start = System.nanoTime();
+        if (!binary) {
+            byte[] json = this.objectMapper.writeValueAsBytes(response);
+            this.metrics.recordSerialization("json", System.nanoTime() - start);
+            return json;
+        }
+
+        var output = new ByteArrayOutputStream();
+        PrimeNumberResponseCodec.write(response, output);
+        this.metrics.recordSerialization("binary", System.nanoTime() - start);
+        return output.toByteArray();
+    }
+
+    /**
+     * Creates the response body for a single number.
+     *
+     * @param n     The number.
+     * @param key   The name of the answer.
+     * @param value The answer.
+     * @return The response body.
+     */
+    private static Map<String, Object> answer(long n, String key, Object value) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("n", n);
+        map.put(key, value);
+        return map;
     }
 }
@@ -8,7 +8,7 @@ import javax.persistence.*;
  * @TODO Add 'IS_PRIME' property, so we can easily look-up if a value is a prime number or not.
  */
 @Entity
-@Table(name = "known_primes")
+@Table(name = "known_primes", indexes = @Index(name = "known_primes_prime_number_idx", columnList = "primeNumber", unique = true))
 public class PrimeNumberEntity {
 
     // The backing field for the ID
@@ -3,7 +3,12 @@ package com.llifon.prime.backend;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 /**
  * A JPA repository which communicates with the table that's associated with the {@link PrimeNumberEntity} entity.
@@ -27,6 +32,45 @@ public interface PrimeNumberRepository extends JpaRepository<PrimeNumberEntity,
     @Query("SELECT x.primeNumber FROM PrimeNumberEntity x WHERE x.primeNumber >= ?1 and x.primeNumber <= ?2 ORDER BY x.primeNumber ASC")
     Page<Long> findPrimesInRange(Pageable pageable, Long start, Long end);
 
+    /**
+     * Retrieves the prime numbers which fall within the given range (inclusive), limited to the size of the
+     * given page. Unlike {@link #findPrimesInRange}, this does not issue a COUNT query, and callers are expected
+     * to seek to the start of their page through {@code start} rather than through an OFFSET.
+     *
+     * @param start The lowest (inclusive) value of the range, usually the first prime of the page.
+     * @param end The largest (inclusive) value of the range.
+     * @param limit The pageable meta-data object whose page size limits the amount of data returned.
+     *
+     * @return At most {@code limit.getPageSize()} prime numbers from the start of the range, in ascending order.
+     */
+    @Query("SELECT x.primeNumber FROM PrimeNumberEntity x WHERE x.primeNumber >= ?1 and x.primeNumber <= ?2 ORDER BY x.primeNumber ASC")
+    List<Long> findPrimesStartingAt(Long start, Long end, Pageable limit);
+
+    /**
+     * Retrieves the prime numbers which come strictly after a given prime, up to the end of the range (inclusive),
+     * limited to the size of the given page. This is the keyset (cursor) counterpart of {@link #findPrimesInRange},
+     * which seeks on the unique index instead of walking past OFFSET rows.
+     *
+     * @param after The last prime that has already been served.
+     * @param end The largest (inclusive) value of the range.
+     * @param limit The pageable meta-data object whose page size limits the amount of data returned.
+     *
+     * @return At most {@code limit.getPageSize()} prime numbers after {@code after}, in ascending order.
+     */
+    @Query("SELECT x.primeNumber FROM PrimeNumberEntity x WHERE x.primeNumber > ?1 and x.primeNumber <= ?2 ORDER BY x.primeNumber ASC")
+    List<Long> findPrimesAfter(Long after, Long end, Pageable limit);
+
+    /**
+     * Counts the prime numbers which fall within the given range (inclusive).
+     *
+     * @param start The lowest (inclusive) value of the range.
+     * @param end The largest (inclusive) value of the range.
+     *
+     * @return The amount of prime numbers in the range.
+     */
+    @Query("SELECT count(x) FROM PrimeNumberEntity x WHERE x.primeNumber >= ?1 and x.primeNumber <= ?2")
+    long countPrimesInRange(Long start, Long end);
+
     /**
      * Gets the largest prime number in the repository.
      *
@@ -34,4 +78,26 @@ public interface PrimeNumberRepository extends JpaRepository<PrimeNumberEntity,
      */
     @Query("SELECT max(x.primeNumber) FROM PrimeNumberEntity x")
     Long getLargestPrime();
+
+    /**
+     * Gets the smallest prime number in the repository.
+     *
+     * @return The smallest prime value.
+     */
+    @Query("SELECT min(x.primeNumber) FROM PrimeNumberEntity x")
+    Long getSmallestPrime();
+
+    /**
+     * Deletes every prime number which is larger than the given value. It is not published by Spring Data REST, as
+     * anyone could otherwise wipe the dataset.
+     *
+     * @param value The largest value to keep.
+     *
+     * @return The amount of deleted prime numbers.
+     */
+    @Modifying
+    @Transactional
+    @RestResource(exported = false)
+    @Query("DELETE FROM PrimeNumberEntity x WHERE x.primeNumber > ?1")
+    int deletePrimesAfter(Long value);
 }
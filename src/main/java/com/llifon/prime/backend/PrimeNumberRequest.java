@@ -1,9 +1,10 @@
 package com.llifon.prime.backend;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
-@JsonPropertyOrder({"from", "to", "pageIndex", "size"})
+@JsonPropertyOrder({"from", "to", "pageIndex", "size", "after"})
 public class PrimeNumberRequest {
 
     // The start of the prime range
@@ -18,6 +19,9 @@ public class PrimeNumberRequest {
     // The maximum amount of items to show on a page
     private int viewSize;
 
+    // The cursor that the page was requested after, if keyset pagination was used
+    private String cursor;
+
     @JsonProperty("from")
     public Long getRequestStart() {
         return requestStart;
@@ -54,6 +58,16 @@ public class PrimeNumberRequest {
         this.viewSize = viewSize;
     }
 
+    @JsonProperty("after")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     @Override
     public String toString() {
         return "PrimeNumberRequest{" +
@@ -61,6 +75,7 @@ public class PrimeNumberRequest {
                 ", requestEnd=" + requestEnd +
                 ", pageIndex=" + pageIndex +
                 ", viewSize=" + viewSize +
+                ", cursor=" + cursor +
                 '}';
     }
 }
@@ -1,11 +1,12 @@
 package com.llifon.prime.backend;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 import java.util.List;
 
-@JsonPropertyOrder({"primeNumbers", "originalRequest", "pagination", "processingTime"})
+@JsonPropertyOrder({"primeNumbers", "originalRequest", "pagination", "nextCursor", "processingTime", "timings"})
 public class PrimeNumberResponse {
 
     // A copy of the request criteria
@@ -20,6 +21,12 @@ public class PrimeNumberResponse {
     // The prime numbers which are valid for the current page
     private List<Long> primeNumbers;
 
+    // The cursor which points at the next page, or null if this is the last page
+    private String nextCursor;
+
+    // The time spent in each phase of the request, or null if they were not asked for
+    private PrimeRequestTimings timings;
+
     public List<Long> getPrimeNumbers() {
         return primeNumbers;
     }
@@ -55,4 +62,23 @@ public class PrimeNumberResponse {
     public void setPageInfo(PrimePageMetadata pageInfo) {
         this.pageInfo = pageInfo;
     }
+
+    @JsonProperty("nextCursor")
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @JsonProperty("timings")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public PrimeRequestTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(PrimeRequestTimings timings) {
+        this.timings = timings;
+    }
 }
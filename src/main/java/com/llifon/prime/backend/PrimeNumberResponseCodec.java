@@ -0,0 +1,234 @@
+package com.llifon.prime.backend;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a {@link PrimeNumberResponse} as {@code application/octet-stream}, for clients which ask for it through
+ * their {@code Accept} header. JSON remains the default. The controller serializes responses itself so that they can
+ * be cached as bytes, which is why this is a plain codec rather than an HTTP message converter.
+ * <p>
+ * All numbers are big-endian. The body starts with a header holding the same fields as the JSON response:
+ * <pre>
+ *   int    magic ("PRMR")      byte   version (2)
+ *   long   request start       long   request end
+ *   int    request page index  int    request page size    string request cursor
+ *   int    page index          long   primes in page
+ *   long   primes in range     int    total pages
+ *   long   processing time     string next cursor
+ *   byte   timings present     int    phase count          (string phase, long nanoseconds) per phase
+ * </pre>
+ * where a string is a presence byte, followed by {@link DataOutputStream#writeUTF modified UTF-8} if it is present.
+ * The {@link PrimeRequestTimings timings} were added in version 2, and are absent from version 1 bodies, which can
+ * still be read.
+ * The primes follow as a varint count and the varint gap of every prime from the previous one (starting from 0), in
+ * the same encoding as the binary {@link PrimeExportFormat export}. Most gaps take a single byte, compared to the 8 to
+ * 20 bytes of a decimal JSON number, and no text is formatted.
+ */
+public final class PrimeNumberResponseCodec {
+
+    // Identifies the start of an encoded response ("PRMR")
+    static final int MAGIC = 0x50524D52;
+
+    // The version of the encoding
+    static final byte VERSION = 2;
+
+    // The first version whose header holds the timings
+    private static final byte TIMINGS_VERSION = 2;
+
+    // The maximum amount of bytes that a varint takes up
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private PrimeNumberResponseCodec() {
+    }
+
+    /**
+     * Encodes a response.
+     *
+     * @param response The response.
+     * @param output   The output to write the encoded response to.
+     * @throws IOException if the output could not be written to.
+     */
+    static void write(PrimeNumberResponse response, OutputStream output) throws IOException {
+        var out = new DataOutputStream(output);
+        var request = response.getRequestInfo();
+        var page = response.getPageInfo();
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        out.writeLong(request.getRequestStart());
+        out.writeLong(request.getRequestEnd());
+        out.writeInt(request.getPageIndex());
+        out.writeInt(request.getViewSize());
+        writeString(out, request.getCursor());
+
+        out.writeInt(page.getPageIndex());
+        out.writeLong(page.getElementsOnPage());
+        out.writeLong(page.getTotalElementsAvailable());
+        out.writeInt(page.getTotalPages());
+
+        out.writeLong(response.getProcessingTime());
+        writeString(out, response.getNextCursor());
+        writeTimings(out, response.getTimings());
+
+        List<Long> primes = response.getPrimeNumbers();
+        byte[] varints = new byte[(primes.size() + 1) * MAX_VARINT_BYTES];
+        int position = PrimeExportWriter.encodeVarint(primes.size(), varints, 0);
+        long previous = 0;
+        for (long prime : primes) {
+            position = PrimeExportWriter.encodeVarint(prime - previous, varints, position);
+            previous = prime;
+        }
+
+        out.write(varints, 0, position);
+        out.flush();
+    }
+
+    /**
+     * Decodes a response.
+     *
+     * @param input The input to read the encoded response from.
+     * @return The response.
+     * @throws IOException if the input could not be read from.
+     * @throws IllegalArgumentException if the input does not hold an encoded response.
+     */
+    static PrimeNumberResponse read(InputStream input) throws IOException {
+        var in = new DataInputStream(input);
+
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("The body is not a binary prime number response");
+        }
+
+        byte version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported binary response version %s", version));
+        }
+
+        PrimeNumberRequest request = new PrimeNumberRequest();
+        request.setRequestStart(in.readLong());
+        request.setRequestEnd(in.readLong());
+        request.setPageIndex(in.readInt());
+        request.setViewSize(in.readInt());
+        request.setCursor(readString(in));
+
+        PrimePageMetadata page = new PrimePageMetadata();
+        page.setPageIndex(in.readInt());
+        page.setElementsOnPage(in.readLong());
+        page.setTotalElementsAvailable(in.readLong());
+        page.setTotalPages(in.readInt());
+
+        PrimeNumberResponse response = new PrimeNumberResponse();
+        response.setRequestInfo(request);
+        response.setPageInfo(page);
+        response.setProcessingTime(in.readLong());
+        response.setNextCursor(readString(in));
+        if (version >= TIMINGS_VERSION) {
+            response.setTimings(readTimings(in));
+        }
+
+        long count = readVarint(in);
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Too many primes in a binary response (%s)", count));
+        }
+
+        List<Long> primes = new ArrayList<>((int) count);
+        long previous = 0;
+        for (long i = 0; i < count; i++) {
+            previous += readVarint(in);
+            primes.add(previous);
+        }
+        response.setPrimeNumbers(primes);
+
+        return response;
+    }
+
+    /**
+     * Writes an optional string.
+     *
+     * @param out   The output.
+     * @param value The string, or null.
+     * @throws IOException if the output could not be written to.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads an optional string.
+     *
+     * @param in The input.
+     * @return The string, or null.
+     * @throws IOException if the input could not be read from.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes optional timings.
+     *
+     * @param out     The output.
+     * @param timings The timings, or null.
+     * @throws IOException if the output could not be written to.
+     */
+    private static void writeTimings(DataOutputStream out, PrimeRequestTimings timings) throws IOException {
+        out.writeBoolean(timings != null);
+        if (timings != null) {
+            out.writeInt(timings.getPhases().size());
+            for (var phase : timings.getPhases().entrySet()) {
+                out.writeUTF(phase.getKey());
+                out.writeLong(phase.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads optional timings.
+     *
+     * @param in The input.
+     * @return The timings, or null.
+     * @throws IOException if the input could not be read from.
+     */
+    private static PrimeRequestTimings readTimings(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        var timings = new PrimeRequestTimings();
+        int phases = in.readInt();
+        for (int i = 0; i < phases; i++) {
+            timings.add(in.readUTF(), in.readLong());
+        }
+
+        return timings;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param in The input.
+     * @return The value.
+     * @throws IOException if the input could not be read from.
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint in a binary response");
+    }
+}
@@ -1,12 +1,14 @@
 package com.llifon.prime.backend;
 
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * The service for providing prime number sequences. While we could have technically used
@@ -16,26 +18,59 @@ import java.time.Instant;
 @Service
 public class PrimeNumberService {
 
-    // The repository containing the known prime numbers
-    private final PrimeNumberRepository repository;
+    // The amount of primes which an export fetches from the store (or generates) at a time
+    private static final int EXPORT_CHUNK_SIZE = 8192;
+
+    // The store containing the known prime numbers
+    private final PrimeNumberStore store;
+
+    // Provides the in-memory index of the known prime numbers, when one is available
+    private final PrimeIndexProvider indexProvider;
+
+    // The cached bounds of the known prime numbers
+    private final PrimeDatasetBoundsHolder boundsHolder;
+
+    // Generates the primes past the stored maximum, when that is enabled
+    private final OnDemandPrimeSource onDemandSource;
+
+    // The meters which time the queries for the primes
+    private final PrimeMetrics metrics;
 
     /**
      * Initializes a new instance of the prime number service
      *
-     * @param repository The repository containing the known prime numbers
+     * @param store          The store containing the known prime numbers
+     * @param indexProvider  Provides the in-memory index of the known prime numbers
+     * @param boundsHolder   The cached bounds of the known prime numbers
+     * @param onDemandSource Generates the primes past the stored maximum
+     * @param metrics        The meters which time the queries for the primes
      */
-    public PrimeNumberService(PrimeNumberRepository repository) {
-        this.repository = repository;
+    public PrimeNumberService(PrimeNumberStore store,
+                              PrimeIndexProvider indexProvider,
+                              PrimeDatasetBoundsHolder boundsHolder,
+                              OnDemandPrimeSource onDemandSource,
+                              PrimeMetrics metrics) {
+        this.store = store;
+        this.indexProvider = indexProvider;
+        this.boundsHolder = boundsHolder;
+        this.onDemandSource = onDemandSource;
+        this.metrics = metrics;
     }
 
     /**
      * Gets the largest prime that this service can serve.
      *
      * @return The largest possible prime that can be provided by this service.
+     * @throws IllegalStateException if there are no known primes yet.
      */
     public long requestLargestSupportedPrime()
     {
-        return this.repository.getLargestPrime();
+        var bounds = this.boundsHolder.get();
+        if (bounds.isEmpty()) {
+            throw new IllegalStateException("There are no known primes yet");
+        }
+
+        return bounds.getMax();
     }
 
     /**
@@ -51,14 +86,238 @@ public class PrimeNumberService {
                                                         long upTo,
                                                         int maxDataPerPage,
                                                         int pageIndex) {
-        if (maxDataPerPage < 1) {
-            throw new IllegalArgumentException("Requested page size must be > 0");
-        }
+        return requestPagedPrimeNumbers(startingFrom, upTo, maxDataPerPage, pageIndex, new PrimeRequestTimings());
+    }
 
+    /**
+     * Generates a response containing prime numbers which exist within a given range, while timing each phase.
+     *
+     * @param startingFrom   The start of the range from within which prime numbers should get sought.
+     * @param upTo           The end of the range from within which prime numbers should get sought.
+     * @param maxDataPerPage The maximum amount of data that should be provided on each page.
+     * @param pageIndex      The index of the page whose data should be returned.
+     * @param timings        Receives the time spent in each phase, and is attached to the response.
+     * @return The official response containing the requested data
+     */
+    public PrimeNumberResponse requestPagedPrimeNumbers(long startingFrom,
+                                                        long upTo,
+                                                        int maxDataPerPage,
+                                                        int pageIndex,
+                                                        PrimeRequestTimings timings) {
         if (pageIndex < 0) {
             throw new IllegalArgumentException("Requested page index must be >= 0");
         }
 
+        long storedMax = validateRange(startingFrom, upTo, maxDataPerPage, timings);
+        this.metrics.recordRequest(startingFrom, upTo, maxDataPerPage);
+
+        List<Long> primes;
+        long totalElements;
+        boolean hasMore;
+
+        var start = Instant.now();
+        if (upTo <= storedMax) {
+            totalElements = countStored(startingFrom, upTo);
+            timings.lap(PrimeRequestTimings.COUNT);
+            primes = pageStored(startingFrom, upTo, pageIndex, maxDataPerPage);
+            timings.lap(PrimeRequestTimings.FETCH);
+            hasMore = (long) (pageIndex + 1) * maxDataPerPage < totalElements && !primes.isEmpty();
+        } else {
+            // The stored part of the range is paged as usual, and the page is completed (with one extra prime, to
+            // find out whether there is another page) from the primes generated after the stored maximum
+            long skip = (long) pageIndex * maxDataPerPage;
+            long storedCount = startingFrom <= storedMax ? countStored(startingFrom, storedMax) : 0;
+            timings.lap(PrimeRequestTimings.COUNT);
+
+            primes = new ArrayList<>(maxDataPerPage + 1);
+            if (skip < storedCount) {
+                primes.addAll(pageStored(startingFrom, storedMax, pageIndex, maxDataPerPage));
+            }
+            primes.addAll(generate(Math.max(startingFrom, storedMax + 1), upTo,
+                    Math.max(0, skip - storedCount), maxDataPerPage + 1 - primes.size()));
+            timings.lap(PrimeRequestTimings.FETCH);
+
+            hasMore = primes.size() > maxDataPerPage;
+            if (hasMore) {
+                primes = primes.subList(0, maxDataPerPage);
+            }
+
+            // Counting the generated part of the range would mean generating all of it
+            totalElements = -1;
+        }
+        var end = Instant.now();
+
+        // Store meta-data for the original request
+        PrimeNumberRequest request = new PrimeNumberRequest();
+        request.setRequestStart(startingFrom);
+        request.setRequestEnd(upTo);
+        request.setPageIndex(pageIndex);
+        request.setViewSize(maxDataPerPage);
+
+        int totalPages = totalElements < 0 ? -1 : (int) ((totalElements + maxDataPerPage - 1) / maxDataPerPage);
+
+        return buildResponse(request, primes, pageIndex, totalElements, totalPages, hasMore,
+                Duration.between(start, end).toMillis(), timings);
+    }
+
+    /**
+     * Generates a response containing the page of prime numbers which comes after a cursor, within a given range.
+     * <p>
+     * Unlike {@link #requestPagedPrimeNumbers}, the page is found by seeking straight to the primes after the cursor
+     * ({@code primeNumber > cursor LIMIT size}), so the cost of a page does not grow with how deep into the range it is.
+     *
+     * @param startingFrom   The start of the range from within which prime numbers should get sought.
+     * @param upTo           The end of the range from within which prime numbers should get sought.
+     * @param cursor         The cursor returned with the previous page, or null for the first page.
+     * @param maxDataPerPage The maximum amount of data that should be provided on the page.
+     * @return The official response containing the requested data, and the cursor of the next page (if any).
+     */
+    public PrimeNumberResponse requestPrimesAfterCursor(long startingFrom,
+                                                        long upTo,
+                                                        String cursor,
+                                                        int maxDataPerPage) {
+        return requestPrimesAfterCursor(startingFrom, upTo, cursor, maxDataPerPage, new PrimeRequestTimings());
+    }
+
+    /**
+     * Generates a response containing the page of prime numbers which comes after a cursor, while timing each phase.
+     *
+     * @param startingFrom   The start of the range from within which prime numbers should get sought.
+     * @param upTo           The end of the range from within which prime numbers should get sought.
+     * @param cursor         The cursor returned with the previous page, or null for the first page.
+     * @param maxDataPerPage The maximum amount of data that should be provided on the page.
+     * @param timings        Receives the time spent in each phase, and is attached to the response.
+     * @return The official response containing the requested data, and the cursor of the next page (if any).
+     */
+    public PrimeNumberResponse requestPrimesAfterCursor(long startingFrom,
+                                                        long upTo,
+                                                        String cursor,
+                                                        int maxDataPerPage,
+                                                        PrimeRequestTimings timings) {
+        long storedMax = validateRange(startingFrom, upTo, maxDataPerPage, timings);
+        this.metrics.recordRequest(startingFrom, upTo, maxDataPerPage);
+
+        long after = startingFrom - 1;
+        if (cursor != null) {
+            after = Math.max(after, PrimeRangeCursor.decode(cursor));
+        }
+
+        // One extra prime is fetched to find out whether there is another page after this one
+        var start = Instant.now();
+        List<Long> primes = new ArrayList<>(maxDataPerPage + 1);
+        if (after < storedMax) {
+            primes.addAll(storedAfter(after, Math.min(upTo, storedMax), maxDataPerPage + 1));
+        }
+        if (upTo > storedMax && primes.size() <= maxDataPerPage) {
+            primes.addAll(generate(Math.max(after, storedMax) + 1, upTo, 0, maxDataPerPage + 1 - primes.size()));
+        }
+        var end = Instant.now();
+        timings.lap(PrimeRequestTimings.FETCH);
+
+        boolean hasMore = primes.size() > maxDataPerPage;
+        if (hasMore) {
+            primes = primes.subList(0, maxDataPerPage);
+        }
+
+        // The totals are only reported when they can be worked out without counting the rows of the range
+        long totalElements = -1;
+        int totalPages = -1;
+        int pageIndex = -1;
+        var counter = this.indexProvider.getCounter();
+        if (counter != null && counter.covers(upTo)) {
+            totalElements = counter.count(startingFrom, upTo);
+            totalPages = (int) ((totalElements + maxDataPerPage - 1) / maxDataPerPage);
+            long alreadySeen = after < startingFrom ? 0 : counter.count(startingFrom, Math.min(after, upTo));
+            pageIndex = (int) (alreadySeen / maxDataPerPage);
+        }
+        timings.lap(PrimeRequestTimings.COUNT);
+
+        // Store meta-data for the original request
+        PrimeNumberRequest request = new PrimeNumberRequest();
+        request.setRequestStart(startingFrom);
+        request.setRequestEnd(upTo);
+        request.setPageIndex(pageIndex);
+        request.setViewSize(maxDataPerPage);
+        request.setCursor(cursor);
+
+        return buildResponse(request, primes, pageIndex, totalElements, totalPages, hasMore,
+                Duration.between(start, end).toMillis(), timings);
+    }
+
+    /**
+     * Creates a response body which streams every prime within a given range, without any pagination.
+     * <p>
+     * The range is validated up-front, so that invalid requests are still rejected with an error response. The
+     * primes are then fetched (or generated, past the stored maximum) one chunk at a time with the same seek as
+     * {@link #requestPrimesAfterCursor}, and encoded straight into the response, so the memory used does not depend
+     * on the size of the range.
+     * <p>
+     * The part of the range past the stored maximum is generated against a single on-demand budget: a range which
+     * spans more numbers than the budget allows is rejected up-front, and should the time budget run out part-way,
+     * the stream fails rather than finishing. The container then closes the connection without ending the chunked
+     * body, so the client sees a truncated transfer instead of what looks like a complete export.
+     *
+     * @param startingFrom The start of the range from within which prime numbers should get sought.
+     * @param upTo         The end of the range from within which prime numbers should get sought.
+     * @param format       The format to encode the primes in.
+     * @return The body which writes the primes once the response is being sent.
+     */
+    public StreamingResponseBody exportPrimes(long startingFrom, long upTo, PrimeExportFormat format) {
+        long storedMax = validateRange(startingFrom, upTo, EXPORT_CHUNK_SIZE, new PrimeRequestTimings());
+        if (upTo > storedMax) {
+            this.onDemandSource.requireWithinSpan(Math.max(startingFrom, storedMax + 1), upTo);
+        }
+
+        return output -> {
+            var writer = new PrimeExportWriter(format, output);
+
+            long storedTo = Math.min(upTo, storedMax);
+            long after = startingFrom - 1;
+            while (after < storedTo) {
+                var chunk = storedAfter(after, storedTo, EXPORT_CHUNK_SIZE);
+                writer.write(chunk);
+                if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                    break;
+                }
+                after = chunk.get(chunk.size() - 1);
+            }
+
+            long next = Math.max(startingFrom, storedMax + 1);
+            long deadline = this.onDemandSource.newDeadline();
+            while (next <= upTo) {
+                List<Long> chunk;
+                try {
+                    chunk = generate(next, upTo, 0, EXPORT_CHUNK_SIZE, deadline);
+                } catch (IllegalArgumentException e) {
+                    // The headers are already sent, so the export can only be cut short by failing the stream
+                    throw new IllegalStateException("The export ran out of its on-demand budget at " + next, e);
+                }
+                writer.write(chunk);
+                if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                    break;
+                }
+                next = chunk.get(chunk.size() - 1) + 1;
+            }
+
+            writer.finish();
+        };
+    }
+
+    /**
+     * Validates the parameters which are shared by all range requests.
+     *
+     * @param startingFrom   The start of the range.
+     * @param upTo           The end of the range.
+     * @param maxDataPerPage The maximum amount of data that should be provided on each page.
+     * @param timings        Receives the time spent validating the parameters and looking up the bounds.
+     * @return The largest stored prime, or -1 if there are none.
+     * @throws IllegalArgumentException if any of the parameters are invalid.
+     */
+    private long validateRange(long startingFrom, long upTo, int maxDataPerPage, PrimeRequestTimings timings) {
+        if (maxDataPerPage < 1) {
+            throw new IllegalArgumentException("Requested page size must be > 0");
+        }
+
         if (startingFrom < 0) {
             throw new IllegalArgumentException("from value must be >= 0");
         }
@@ -66,41 +325,167 @@ public class PrimeNumberService {
         if (upTo < startingFrom) {
             throw new IllegalArgumentException("'to' param must be > 'from' value");
         }
+        timings.lap(PrimeRequestTimings.VALIDATE);
+
+        var bounds = this.boundsHolder.get();
+        timings.lap(PrimeRequestTimings.BOUNDS);
+
+        // Anything past the stored primes can still be served, if it may be generated on demand
+        if (this.onDemandSource.isEnabled()) {
+            return bounds.getMax();
+        }
 
-        var max = this.repository.getLargestPrime();
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("This service does not have any known primes yet");
+        }
+
+        var max = bounds.getMax();
         if (upTo > max)
         {
             throw new IllegalArgumentException("This service does not support primes larger than " + max);
         }
 
-        Pageable pageable = PageRequest.of(pageIndex, maxDataPerPage);
+        return max;
+    }
 
-        var start = Instant.now();
-        var repositoryResponse = this.repository.findPrimesInRange(pageable, startingFrom, upTo);
-        var end = Instant.now();
-        var pageImpl = new PageImpl<>(repositoryResponse.getContent(), pageable, repositoryResponse.getTotalElements());
+    /**
+     * Counts the stored primes within a range, from the fastest source which covers it.
+     *
+     * @param from The first value in the range.
+     * @param to   The last value in the range, which must not be past the stored maximum.
+     * @return The amount of primes.
+     */
+    private long countStored(long from, long to) {
+        var counter = this.indexProvider.getCounter();
+        if (counter != null && counter.covers(to)) {
+            return this.metrics.timeQuery(PrimeMetrics.Query.COUNT_MEMORY, () -> counter.count(from, to));
+        }
 
-        // Store meta-data for the original request
-        PrimeNumberRequest request = new PrimeNumberRequest();
-        request.setRequestStart(startingFrom);
-        request.setRequestEnd(upTo);
-        request.setPageIndex(pageIndex);
-        request.setViewSize(maxDataPerPage);
+        return this.metrics.timeQuery(PrimeMetrics.Query.COUNT_STORE, () -> this.store.countPrimesInRange(from, to));
+    }
+
+    /**
+     * Retrieves a page of the stored primes within a range, from the fastest source which covers it.
+     *
+     * @param from      The first value in the range.
+     * @param to        The last value in the range, which must not be past the stored maximum.
+     * @param pageIndex The index of the page.
+     * @param pageSize  The amount of primes on each page.
+     * @return The primes of the page, in ascending order.
+     */
+    private List<Long> pageStored(long from, long to, int pageIndex, int pageSize) {
+        var index = this.indexProvider.getIndex();
+        if (index != null && index.covers(to)) {
+            // Served straight from memory, without a round trip to the store
+            return this.metrics.timeQuery(PrimeMetrics.Query.PAGE_MEMORY,
+                    () -> boxed(index.page(from, to, (long) pageIndex * pageSize, pageSize)));
+        }
+
+        var counter = this.indexProvider.getCounter();
+        if (counter != null && counter.covers(to)) {
+            // The first prime of the page is known up-front, so the store does not walk past OFFSET rows to reach it
+            long pageStart = counter.pageStart(from, to, pageIndex, pageSize);
+            return pageStart < 0 ? List.of() : this.metrics.timeQuery(PrimeMetrics.Query.PAGE_STORE,
+                    () -> this.store.findPrimesStartingAt(pageStart, to, pageSize));
+        }
+
+        return this.metrics.timeQuery(PrimeMetrics.Query.PAGE_STORE, () -> this.store.findPage(from, to, pageIndex, pageSize));
+    }
+
+    /**
+     * Retrieves the stored primes which come strictly after a value, from the fastest source which covers them.
+     *
+     * @param after The last value that has already been served.
+     * @param to    The last value in the range, which must not be past the stored maximum.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes, in ascending order.
+     */
+    private List<Long> storedAfter(long after, long to, int limit) {
+        var index = this.indexProvider.getIndex();
+        if (index != null && index.covers(to)) {
+            return after >= to ? List.of() : this.metrics.timeQuery(PrimeMetrics.Query.AFTER_MEMORY,
+                    () -> boxed(index.page(after + 1, to, 0, limit)));
+        }
+
+        return this.metrics.timeQuery(PrimeMetrics.Query.AFTER_STORE, () -> this.store.findPrimesAfter(after, to, limit));
+    }
 
+    /**
+     * Generates the primes of a range which lies past the stored maximum.
+     *
+     * @param from  The first value in the range.
+     * @param to    The last value in the range (inclusive).
+     * @param skip  The amount of primes of the range to skip.
+     * @param limit The maximum amount of primes to return.
+     * @return The primes, in ascending order.
+     */
+    private List<Long> generate(long from, long to, long skip, int limit) {
+        return this.metrics.timeQuery(PrimeMetrics.Query.GENERATE_ON_DEMAND, () -> this.onDemandSource.generate(from, to, skip, limit));
+    }
+
+    /**
+     * Generates part of a range which lies past the stored maximum, against a time budget which was started earlier.
+     *
+     * @param from     The first value in the range.
+     * @param to       The last value in the range (inclusive).
+     * @param skip     The amount of primes of the range to skip.
+     * @param limit    The maximum amount of primes to return.
+     * @param deadline The {@link System#nanoTime()} by which generation has to finish.
+     * @return The primes, in ascending order.
+     */
+    private List<Long> generate(long from, long to, long skip, int limit, long deadline) {
+        return this.metrics.timeQuery(PrimeMetrics.Query.GENERATE_ON_DEMAND,
+                () -> this.onDemandSource.generate(from, to, skip, limit, deadline));
+    }
+
+    /**
+     * Assembles the response for a page of prime numbers.
+     *
+     * @param request        The meta-data of the original request.
+     * @param primes         The primes of the page.
+     * @param pageIndex      The index of the page, or -1 if it is unknown.
+     * @param totalElements  The amount of primes in the whole range, or -1 if it is unknown.
+     * @param totalPages     The amount of pages in the whole range, or -1 if it is unknown.
+     * @param hasMore        Whether there are more primes in the range after this page.
+     * @param processingTime The amount of time it took to fetch the primes.
+     * @param timings        Receives the time spent assembling the response, and is attached to it.
+     * @return The official response.
+     */
+    private PrimeNumberResponse buildResponse(PrimeNumberRequest request,
+                                              List<Long> primes,
+                                              int pageIndex,
+                                              long totalElements,
+                                              int totalPages,
+                                              boolean hasMore,
+                                              long processingTime,
+                                              PrimeRequestTimings timings) {
         // Store meta-data for the pagination of the data
         PrimePageMetadata pageData = new PrimePageMetadata();
-        pageData.setElementsOnPage(pageImpl.getNumberOfElements());
-        pageData.setPageIndex(pageable.getPageNumber());
-        pageData.setTotalElementsAvailable(pageImpl.getTotalElements());
-        pageData.setTotalPages(pageImpl.getTotalPages());
+        pageData.setElementsOnPage(primes.size());
+        pageData.setPageIndex(pageIndex);
+        pageData.setTotalElementsAvailable(totalElements);
+        pageData.setTotalPages(totalPages);
 
         // Store the actual prime numbers and meta-data
         PrimeNumberResponse response = new PrimeNumberResponse();
-        response.setPrimeNumbers(repositoryResponse.getContent());
+        response.setPrimeNumbers(primes);
         response.setRequestInfo(request);
         response.setPageInfo(pageData);
-        response.setProcessingTime(Duration.between(start, end).toMillis());
+        response.setProcessingTime(processingTime);
+        response.setNextCursor(hasMore ? PrimeRangeCursor.encode(primes.get(primes.size() - 1)) : null);
 
+        timings.lap(PrimeRequestTimings.ASSEMBLE);
+        response.setTimings(timings);
         return response;
     }
+
+    /**
+     * Boxes an array of primes into a list.
+     *
+     * @param primes The primes.
+     * @return The list of primes.
+     */
+    private static List<Long> boxed(long[] primes) {
+        return Arrays.stream(primes).boxed().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,123 @@
+package com.llifon.prime.backend;
+
+import java.util.List;
+
+/**
+ * The persistent store of the known prime numbers, which the service reads from and the initializer writes to.
+ * <p>
+ * Exactly one implementation is active, as chosen by the {@code prime.storage.mode} property.
+ */
+public interface PrimeNumberStore {
+
+    /**
+     * Gets the smallest stored prime.
+     *
+     * @return The smallest prime, or null if there are none.
+     */
+    Long getSmallestPrime();
+
+    /**
+     * Gets the largest stored prime.
+     *
+     * @return The largest prime, or null if there are none.
+     */
+    Long getLargestPrime();
+
+    /**
+     * Counts all of the stored primes.
+     *
+     * @return The amount of primes.
+     */
+    long countPrimes();
+
+    /**
+     * Counts the stored primes which fall within the given range (inclusive).
+     *
+     * @param start The lowest (inclusive) value of the range.
+     * @param end   The largest (inclusive) value of the range.
+     * @return The amount of primes.
+     */
+    long countPrimesInRange(long start, long end);
+
+    /**
+     * Retrieves a page of the stored primes which fall within the given range (inclusive).
+     *
+     * @param start     The lowest (inclusive) value of the range.
+     * @param end       The largest (inclusive) value of the range.
+     * @param pageIndex The index of the page.
+     * @param pageSize  The amount of primes on each page.
+     * @return The primes of the page, in ascending order.
+     */
+    List<Long> findPage(long start, long end, int pageIndex, int pageSize);
+
+    /**
+     * Retrieves the first stored primes from the start of the given range (inclusive). Unlike {@link #findPage}, the
+     * cost does not depend on how far into the data the range starts.
+     *
+     * @param start The lowest (inclusive) value of the range.
+     * @param end   The largest (inclusive) value of the range.
+     * @param limit The maximum amount of primes to return.
+     * @return At most {@code limit} primes from the start of the range, in ascending order.
+     */
+    List<Long> findPrimesStartingAt(long start, long end, int limit);
+
+    /**
+     * Retrieves the first stored primes which come strictly after a given value, up to the end of the range.
+     *
+     * @param after The last value that has already been served.
+     * @param end   The largest (inclusive) value of the range.
+     * @param limit The maximum amount of primes to return.
+     * @return At most {@code limit} primes after {@code after}, in ascending order.
+     */
+    default List<Long> findPrimesAfter(long after, long end, int limit) {
+        return after >= end ? List.of() : findPrimesStartingAt(after + 1, end, limit);
+    }
+
+    /**
+     * Stores a chunk of primes.
+     *
+     * @param primes The buffer holding the primes, in ascending order.
+     * @param count  The amount of primes at the start of the buffer to store.
+     */
+    void write(long[] primes, int count);
+
+    /**
+     * Gets the value up to which the store is known to hold every prime, as last recorded by
+     * {@link #markCompletedUpTo(long)}.
+     *
+     * @return The value, or -1 if nothing has been recorded.
+     */
+    long getCompletedUpTo();
+
+    /**
+     * Records that the store holds every prime up to (and including) the given value. Everything written up to that
+     * value must have been {@link #flush() flushed} first.
+     *
+     * @param value The value.
+     */
+    void markCompletedUpTo(long value);
+
+    /**
+     * Removes every stored prime which is larger than the given value, such as those of a partially written segment.
+     *
+     * @param value The largest value to keep.
+     */
+    void deleteAfter(long value);
+
+    /**
+     * Makes every prime which has been written so far durable and readable. Stores which write straight through
+     * to their backing storage have nothing to do.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Gets a complete index of the stored primes, if the store already holds one, so that it does not have to be
+     * built again by sieving.
+     *
+     * @return The index, or null if the store does not hold one.
+     */
+    default PrimeIndex getIndex() {
+        return null;
+    }
+}
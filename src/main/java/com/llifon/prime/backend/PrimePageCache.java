@@ -0,0 +1,264 @@
+package com.llifon.prime.backend;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * A least-recently-used cache of serialized {@code /prime-range} responses, bounded by the amount of bytes it holds.
+ * <p>
+ * Every entry belongs to the {@link PrimeDatasetBounds#getVersion() version} of the stored primes that it was built
+ * from, and the whole cache is dropped as soon as that version changes, so a cached page is never older than the
+ * primes it was read from. Responses are cached after serialization, so a hit is served without touching the store or
+ * Jackson at all.
+ * <p>
+ * Since every lookup of an access-ordered map is a write, the cache is striped into independently locked segments by
+ * the hash of the key, so that concurrent requests only contend when they hit the same segment. Each segment evicts
+ * its own least recently used entries within an equal share of the size, so the eviction order is only approximately
+ * LRU across the whole cache.
+ */
+@Component
+public class PrimePageCache {
+
+    // The rough amount of memory taken up by an entry on top of its body
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    // The maximum amount of segments that the cache is striped into
+    private static final int MAX_SEGMENTS = 16;
+
+    // The minimum size of a segment, so that small caches are not split into segments too small to hold a response
+    private static final long MIN_SEGMENT_BYTES = 4L * 1024 * 1024;
+
+    // The cached bounds of the known prime numbers, whose version the entries belong to
+    private final PrimeDatasetBoundsHolder boundsHolder;
+
+    // Whether responses are cached at all
+    private final boolean enabled;
+
+    // The segments, whose amount is a power of two
+    private final Segment[] segments;
+
+    /**
+     * Creates a new page cache.
+     *
+     * @param boundsHolder The cached bounds of the known prime numbers.
+     * @param properties   The application configuration.
+     */
+    public PrimePageCache(PrimeDatasetBoundsHolder boundsHolder, PrimeBackendProperties properties) {
+        this.boundsHolder = boundsHolder;
+        this.enabled = properties.getCache().isEnabled();
+
+        long maxBytes = properties.getCache().getMaxSize().toBytes();
+        int segmentCount = Integer.highestOneBit((int) Math.max(1, Math.min(MAX_SEGMENTS, maxBytes / MIN_SEGMENT_BYTES)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(maxBytes / segmentCount);
+        }
+    }
+
+    /**
+     * Gets the version of the stored primes, which must be read before building a response that is to be cached.
+     *
+     * @return The current version.
+     */
+    public long currentVersion() {
+        return this.boundsHolder.get().getVersion();
+    }
+
+    /**
+     * Looks up a cached response.
+     *
+     * @param key The request.
+     * @return The serialized response, or null if it is not cached.
+     */
+    public byte[] get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+
+        return segmentOf(key).get(key, currentVersion());
+    }
+
+    /**
+     * Caches a response, evicting the least recently used ones (of its segment) to make room for it.
+     * Responses larger than an eighth of a segment are not cached.
+     *
+     * @param key     The request.
+     * @param version The version of the stored primes, as it was before the response was built.
+     * @param body    The serialized response.
+     */
+    public void put(Key key, long version, byte[] body) {
+        // Responses built from primes which have changed since are not cached
+        if (!enabled || version != currentVersion()) {
+            return;
+        }
+
+        segmentOf(key).put(key, version, body);
+    }
+
+    /**
+     * Gets the amount of bytes that the cached responses take up.
+     *
+     * @return The amount of bytes.
+     */
+    public long getUsedBytes() {
+        long version = currentVersion();
+        long used = 0;
+        for (var segment : segments) {
+            used += segment.getUsedBytes(version);
+        }
+
+        return used;
+    }
+
+    /**
+     * Finds the segment which holds a key.
+     *
+     * @param key The key.
+     * @return The segment.
+     */
+    private Segment segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Estimates the amount of memory taken up by an entry.
+     *
+     * @param body The serialized response.
+     * @return The amount of bytes.
+     */
+    private static long sizeOf(byte[] body) {
+        return body.length + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * An independently locked, least-recently-used part of the cache.
+     */
+    private static final class Segment {
+
+        // The maximum amount of bytes that the entries of the segment may take up
+        private final long maxBytes;
+
+        // The entries, from the least to the most recently used
+        private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        // The amount of bytes that the entries take up
+        private long usedBytes;
+
+        // The version of the stored primes which the entries belong to
+        private long version = -1;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(Key key, long current) {
+            return isCurrent(current) ? entries.get(key) : null;
+        }
+
+        synchronized void put(Key key, long current, byte[] body) {
+            long size = sizeOf(body);
+            if (!isCurrent(current) || size > maxBytes / 8) {
+                return;
+            }
+
+            byte[] previous = entries.put(key, body);
+            if (previous != null) {
+                usedBytes -= sizeOf(previous);
+            }
+            usedBytes += size;
+
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (usedBytes > maxBytes) {
+                usedBytes -= sizeOf(eldest.next());
+                eldest.remove();
+            }
+        }
+
+        synchronized long getUsedBytes(long current) {
+            return isCurrent(current) ? usedBytes : 0;
+        }
+
+        /**
+         * Checks that the entries belong to a version of the stored primes, dropping them all if they belong to an
+         * older one.
+         *
+         * @param current The version.
+         * @return False if the entries belong to a newer version.
+         */
+        private boolean isCurrent(long current) {
+            if (current > version) {
+                entries.clear();
+                usedBytes = 0;
+                version = current;
+            }
+
+            return current == version;
+        }
+    }
+
+    /**
+     * Identifies a {@code /prime-range} request, in the format it is to be served in.
+     */
+    public static final class Key {
+
+        // The start of the range
+        private final long from;
+
+        // The end of the range
+        private final long to;
+
+        // The index of the page
+        private final long page;
+
+        // The size of the page
+        private final long size;
+
+        // The cursor of the page, or null
+        private final String after;
+
+        // Whether the response is encoded in binary rather than JSON
+        private final boolean binary;
+
+        /**
+         * Creates a new key.
+         *
+         * @param from   The start of the range.
+         * @param to     The end of the range.
+         * @param page   The index of the page.
+         * @param size   The size of the page.
+         * @param after  The cursor of the page, or null.
+         * @param binary Whether the response is encoded in binary rather than JSON.
+         */
+        public Key(long from, long to, long page, long size, String after, boolean binary) {
+            this.from = from;
+            this.to = to;
+            this.page = page;
+            this.size = size;
+            this.after = after;
+            this.binary = binary;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return from == key.from && to == key.to && page == key.page && size == key.size
+                    && binary == key.binary && Objects.equals(after, key.after);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to, page, size, after, binary);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.llifon.prime.backend;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursors used for keyset pagination of prime ranges.
+ * <p>
+ * A cursor marks the last prime that a client has already received, so the next page is simply every prime which
+ * is strictly greater than it. Clients should treat the cursor as an opaque token and pass it back as-is.
+ */
+public final class PrimeRangeCursor {
+
+    // The version tag of the cursor format, so that the format can change without misreading old cursors
+    private static final byte VERSION = 1;
+
+    private PrimeRangeCursor() {
+    }
+
+    /**
+     * Creates a cursor which points after the given prime.
+     *
+     * @param lastPrime The last prime that the client has received.
+     * @return The opaque cursor.
+     */
+    public static String encode(long lastPrime) {
+        var bytes = ByteBuffer.allocate(Long.BYTES + 1).put(VERSION).putLong(lastPrime).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Reads the last prime that a cursor points after.
+     *
+     * @param cursor The opaque cursor.
+     * @return The last prime that the client has received.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static long decode(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+
+        if (bytes.length != Long.BYTES + 1 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+
+        return ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+    }
+}
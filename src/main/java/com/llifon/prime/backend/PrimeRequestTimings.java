@@ -0,0 +1,91 @@
+package com.llifon.prime.backend;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The time spent in each phase of serving a range request, with nanosecond resolution.
+ * <p>
+ * The phases are measured back to back with {@link #lap}: every lap charges the time since the previous one to the
+ * given phase, so phases which are entered several times (such as fetching the stored and then the generated part of
+ * a page) add up. The timings serialize as a JSON object of phase names to nanoseconds, and can be rendered as a
+ * {@code Server-Timing} HTTP header.
+ */
+public class PrimeRequestTimings {
+
+    // The phase where the request parameters are checked
+    public static final String VALIDATE = "validate";
+
+    // The phase where the bounds of the stored primes are looked up
+    public static final String BOUNDS = "bounds";
+
+    // The phase where the primes of the page are fetched or generated
+    public static final String FETCH = "fetch";
+
+    // The phase where the primes of the whole range are counted
+    public static final String COUNT = "count";
+
+    // The phase where the response is put together
+    public static final String ASSEMBLE = "assemble";
+
+    // The phase where the response is serialized
+    public static final String SERIALIZE = "serialize";
+
+    // The nanoseconds spent in every phase, in the order that the phases were first entered
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    // The System.nanoTime() of the previous lap
+    private long last = System.nanoTime();
+
+    /**
+     * Charges the time since the previous lap (or since the timings were created) to a phase.
+     *
+     * @param phase The phase which has just finished.
+     */
+    public void lap(String phase) {
+        long now = System.nanoTime();
+        phases.merge(phase, now - last, Long::sum);
+        last = now;
+    }
+
+    /**
+     * Charges an amount of time to a phase, such as one which was measured elsewhere and decoded.
+     *
+     * @param phase The phase.
+     * @param nanos The nanoseconds spent in it.
+     */
+    void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Gets the time spent in every phase.
+     *
+     * @return The nanoseconds of every phase, in the order that the phases were first entered.
+     */
+    @JsonValue
+    public Map<String, Long> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Renders the timings as the value of a {@code Server-Timing} HTTP header, where durations are in milliseconds.
+     *
+     * @return The header value, such as {@code validate;dur=0.004, fetch;dur=1.250}.
+     */
+    public String toServerTiming() {
+        var header = new StringBuilder();
+        for (var phase : phases.entrySet()) {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(phase.getKey()).append(";dur=")
+                    .append(String.format(Locale.ROOT, "%.3f", phase.getValue() / 1e6));
+        }
+
+        return header.toString();
+    }
+}
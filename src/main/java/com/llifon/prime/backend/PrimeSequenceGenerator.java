@@ -1,6 +1,10 @@
 package com.llifon.prime.backend;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An interface for a unit that can generate a sequence of prime numbers which exist within a number range.
@@ -20,9 +24,41 @@ public interface PrimeSequenceGenerator<T extends Number> {
      *                  the upper bound will be included.
      * @return An iterator for all of the numbers that were generated. An iterator is chosen here in-order to
      * support a sequence amount that's larger than the capacity of {@link Integer#MAX_VALUE} which could be
-     * an issue if we were to return an ArrayList for example.
+     * an issue if we were to return an ArrayList for example. Implementations should produce the numbers lazily
+     * as the iterator is advanced, rather than buffering the whole sequence up-front.
      *
      * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
      */
     Iterator<T> generate(T from, T upTo, boolean inclusive);
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, as an ordered spliterator.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number.
+     * @return A lazy spliterator over the generated numbers, in ascending order.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    default Spliterator<T> spliterator(T from, T upTo, boolean inclusive) {
+        return Spliterators.spliteratorUnknownSize(generate(from, upTo, inclusive),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, as a sequential stream.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number.
+     * @return A lazy stream of the generated numbers, in ascending order.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    default Stream<T> stream(T from, T upTo, boolean inclusive) {
+        return StreamSupport.stream(spliterator(from, upTo, inclusive), false);
+    }
 }
@@ -4,6 +4,7 @@ import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -28,12 +29,17 @@ public class RestExceptionInterceptor extends ResponseEntityExceptionHandler {
 
     /**
      * Wraps the api error in a response.
+     * <p>
+     * Errors are always rendered as JSON, even when the client asked for another format (such as the binary range
+     * responses), since a preset content type takes precedence over the Accept header.
      *
      * @param apiError The API error to wrap.
      * @return The
      */
     private ResponseEntity<Object> buildResponseEntity(RestApiErrorResponse apiError) {
-        return new ResponseEntity<>(apiError, apiError.getStatus());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new ResponseEntity<>(apiError, headers, apiError.getStatus());
     }
 
     /**
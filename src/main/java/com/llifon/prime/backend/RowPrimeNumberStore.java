@@ -0,0 +1,126 @@
+package com.llifon.prime.backend;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores every prime as its own row of the {@code known_primes} table, through the {@link PrimeNumberRepository}.
+ * <p>
+ * This is the default storage mode.
+ */
+@Component
+@ConditionalOnProperty(prefix = "prime.storage", name = "mode", havingValue = "rows", matchIfMissing = true)
+public class RowPrimeNumberStore implements PrimeNumberStore {
+
+    // The name under which the checkpoint of this store is recorded
+    private static final String CHECKPOINT_NAME = "rows";
+
+    // The repository containing the known prime numbers
+    private final PrimeNumberRepository repository;
+
+    // The repository containing the completion checkpoint
+    private final PrimeCheckpointRepository checkpoints;
+
+    // Writes the primes straight into the database, bypassing JPA
+    private final PrimeBulkLoader bulkLoader;
+
+    // How the primes are written into the database
+    private final PrimeBackendProperties.Writer writer;
+
+    /**
+     * Creates a new row store.
+     *
+     * @param repository  The repository containing the known prime numbers.
+     * @param checkpoints The repository containing the completion checkpoint.
+     * @param bulkLoader  Writes the primes straight into the database.
+     * @param properties  The application configuration.
+     */
+    public RowPrimeNumberStore(PrimeNumberRepository repository,
+                               PrimeCheckpointRepository checkpoints,
+                               PrimeBulkLoader bulkLoader,
+                               PrimeBackendProperties properties) {
+        this.repository = repository;
+        this.checkpoints = checkpoints;
+        this.bulkLoader = bulkLoader;
+        this.writer = properties.getPopulation().getWriter();
+    }
+
+    @Override
+    public Long getSmallestPrime() {
+        return this.repository.getSmallestPrime();
+    }
+
+    @Override
+    public Long getLargestPrime() {
+        return this.repository.getLargestPrime();
+    }
+
+    @Override
+    public long countPrimes() {
+        return this.repository.count();
+    }
+
+    @Override
+    public long countPrimesInRange(long start, long end) {
+        return this.repository.countPrimesInRange(start, end);
+    }
+
+    @Override
+    public List<Long> findPage(long start, long end, int pageIndex, int pageSize) {
+        return this.repository.findPrimesStartingAt(start, end, PageRequest.of(pageIndex, pageSize));
+    }
+
+    @Override
+    public List<Long> findPrimesStartingAt(long start, long end, int limit) {
+        return this.repository.findPrimesStartingAt(start, end, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Long> findPrimesAfter(long after, long end, int limit) {
+        return this.repository.findPrimesAfter(after, end, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public void write(long[] primes, int count) {
+        if (writer == PrimeBackendProperties.Writer.BULK) {
+            try {
+                this.bulkLoader.write(primes, count);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to bulk load primes starting at " + primes[0], e);
+            }
+            return;
+        }
+
+        List<PrimeNumberEntity> primeList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            var prime = new PrimeNumberEntity();
+            prime.setPrimeNumber(primes[i]);
+            primeList.add(prime);
+        }
+
+        this.repository.saveAll(primeList);
+    }
+
+    @Override
+    public long getCompletedUpTo() {
+        return this.checkpoints.findById(CHECKPOINT_NAME).map(PrimeCheckpointEntity::getCompletedUpTo).orElse(-1L);
+    }
+
+    @Override
+    public void markCompletedUpTo(long value) {
+        var checkpoint = new PrimeCheckpointEntity();
+        checkpoint.setName(CHECKPOINT_NAME);
+        checkpoint.setCompletedUpTo(value);
+        this.checkpoints.save(checkpoint);
+    }
+
+    @Override
+    public void deleteAfter(long value) {
+        this.repository.deletePrimesAfter(value);
+    }
+}
@@ -0,0 +1,262 @@
+package com.llifon.prime.backend;
+
+import java.util.Arrays;
+
+/**
+ * A segmented Sieve of Eratosthenes engine.
+ * <p>
+ * Rather than allocating one flag per number in the whole requested range, the engine computes the
+ * "base" primes up to the square root of the upper bound once, and then sieves the range in fixed-size
+ * segments which are small enough to stay resident in the CPU cache. Memory usage is therefore bounded by
+ * the segment size (plus the base primes), and not by the width of the range.
+ * <p>
+ * Segments are represented as packed {@code long[]} words where a SET bit means the number at that offset
+ * is prime. Instances are immutable once created, so a single sieve can be shared by many threads as long as
+ * each thread uses its own segment buffer.
+ */
+public final class SegmentedSieve {
+
+    // The default amount of numbers sieved per segment. 2^18 bits is 32KB of words, which fits in a typical L1/L2 cache.
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 18;
+
+    // The largest base prime that could ever be needed, which is floor(sqrt(Long.MAX_VALUE)).
+    static final long MAX_BASE_PRIME = 3037000499L;
+
+    // Below this limit the base primes are computed with a plain (non-segmented) sieve.
+    private static final int SIMPLE_SIEVE_LIMIT = 1 << 20;
+
+    // The sieving primes, stored as unsigned ints since sqrt(Long.MAX_VALUE) is larger than Integer.MAX_VALUE.
+    private final int[] basePrimes;
+
+    // The largest value that this sieve is able to sieve.
+    private final long upperBound;
+
+    /**
+     * Creates a new sieve which is able to sieve any segment whose values do not exceed {@code upperBound}.
+     *
+     * @param upperBound The largest value that will ever be sieved.
+     * @throws IllegalArgumentException {upperBound} must be >= 0
+     */
+    public SegmentedSieve(long upperBound) {
+        if (upperBound < 0) {
+            throw new IllegalArgumentException(String.format("{upperBound} (%s) must be >= 0", upperBound));
+        }
+
+        this.upperBound = upperBound;
+        this.basePrimes = basePrimesUpTo(sqrtFloor(upperBound));
+    }
+
+    /**
+     * Gets the largest value that this sieve is able to sieve.
+     *
+     * @return The upper bound of the sieve.
+     */
+    public long getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Calculates the amount of {@code long} words needed to hold a segment of the given length.
+     *
+     * @param length The amount of numbers in the segment.
+     * @return The amount of words needed.
+     */
+    public static int wordsFor(int length) {
+        return (length + 63) >>> 6;
+    }
+
+    /**
+     * Sieves the segment {@code [low, low + length)}. Once complete, bit {@code i} of {@code words} is set
+     * if and only if {@code low + i} is a prime number.
+     *
+     * @param low    The first value in the segment.
+     * @param length The amount of numbers in the segment.
+     * @param words  The buffer to write the flags into. Must hold at least {@link #wordsFor(int)} words.
+     * @throws IllegalArgumentException if the segment falls outside of the bounds of this sieve.
+     */
+    public void sieve(long low, int length, long[] words) {
+        if (low < 0 || length < 0 || (length > 0 && low + (length - 1) > upperBound)) {
+            throw new IllegalArgumentException(String.format(
+                    "Segment [%s, +%s) is outside of the sieve bounds [0, %s]", low, length, upperBound));
+        }
+
+        sieve(basePrimes, low, length, words);
+    }
+
+    /**
+     * Finds the index of the next set bit (the next prime) in a sieved segment.
+     *
+     * @param words     The sieved segment.
+     * @param fromIndex The index to start searching from (inclusive).
+     * @param length    The amount of numbers in the segment.
+     * @return The index of the next set bit, or -1 if there are no more primes in the segment.
+     */
+    public static int nextSetBit(long[] words, int fromIndex, int length) {
+        if (fromIndex >= length) {
+            return -1;
+        }
+
+        int wordIndex = fromIndex >>> 6;
+        long word = words[wordIndex] & (-1L << fromIndex);
+        int lastWord = (length - 1) >>> 6;
+
+        while (true) {
+            if (word != 0) {
+                int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return index < length ? index : -1;
+            }
+
+            if (++wordIndex > lastWord) {
+                return -1;
+            }
+
+            word = words[wordIndex];
+        }
+    }
+
+    /**
+     * Calculates {@code floor(sqrt(n))} exactly, for any non-negative long.
+     *
+     * @param n The value.
+     * @return The integer square root of the value.
+     */
+    public static long sqrtFloor(long n) {
+        long root = (long) Math.sqrt((double) n);
+
+        // Correct for the rounding errors of the double-precision square root.
+        while (root * root > n || root > MAX_BASE_PRIME) {
+            root--;
+        }
+        while (root < MAX_BASE_PRIME && (root + 1) * (root + 1) <= n) {
+            root++;
+        }
+
+        return root;
+    }
+
+    /**
+     * Computes all of the prime numbers up to (and including) {@code limit}.
+     *
+     * @param limit The largest value to test, at most {@code floor(sqrt(Long.MAX_VALUE))}.
+     * @return The primes in ascending order, encoded as unsigned ints.
+     */
+    static int[] basePrimesUpTo(long limit) {
+        if (limit < 2) {
+            return new int[0];
+        }
+
+        if (limit > MAX_BASE_PRIME) {
+            throw new IllegalArgumentException(String.format("{limit} (%s) must be <= %s", limit, MAX_BASE_PRIME));
+        }
+
+        if (limit <= SIMPLE_SIEVE_LIMIT) {
+            return simpleSieve((int) limit);
+        }
+
+        // Large limits are themselves sieved in segments, using the primes up to sqrt(limit).
+        int[] sievingPrimes = basePrimesUpTo(sqrtFloor(limit));
+        int[] primes = new int[estimatePrimeCount(limit)];
+        int count = 0;
+
+        long[] words = new long[wordsFor(DEFAULT_SEGMENT_SIZE)];
+        for (long low = 0; low <= limit; low += DEFAULT_SEGMENT_SIZE) {
+            int length = (int) Math.min(DEFAULT_SEGMENT_SIZE, limit - low + 1);
+            sieve(sievingPrimes, low, length, words);
+
+            for (int i = nextSetBit(words, 0, length); i >= 0; i = nextSetBit(words, i + 1, length)) {
+                if (count == primes.length) {
+                    primes = Arrays.copyOf(primes, primes.length + (primes.length >>> 3) + 1);
+                }
+                primes[count++] = (int) (low + i);
+            }
+        }
+
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Crosses off all of the composites in the segment {@code [low, low + length)}.
+     *
+     * @param primes The sieving primes (unsigned), which must cover every prime up to sqrt of the segment end.
+     * @param low    The first value in the segment.
+     * @param length The amount of numbers in the segment.
+     * @param words  The buffer to write the flags into.
+     */
+    private static void sieve(int[] primes, long low, int length, long[] words) {
+        if (length == 0) {
+            return;
+        }
+
+        // Basically assumes everything is a PRIME number, and then crosses out what we know for a fact IS NOT one.
+        int wordCount = wordsFor(length);
+        Arrays.fill(words, 0, wordCount, -1L);
+        if ((length & 63) != 0) {
+            words[wordCount - 1] &= (1L << length) - 1;
+        }
+
+        // 0 and 1 are not prime numbers
+        for (long n = low; n < 2 && n < low + length; n++) {
+            words[0] &= ~(1L << (n - low));
+        }
+
+        long high = low + (length - 1);
+        for (int prime : primes) {
+            long p = Integer.toUnsignedLong(prime);
+            long square = p * p;
+            if (square > high) {
+                break;
+            }
+
+            // Works in offsets relative to the segment so that nothing overflows near Long.MAX_VALUE
+            long start;
+            if (square >= low) {
+                start = square - low;
+            } else {
+                long remainder = low % p;
+                start = remainder == 0 ? 0 : p - remainder;
+            }
+
+            for (long i = start; i < length; i += p) {
+                words[(int) (i >>> 6)] &= ~(1L << i);
+            }
+        }
+    }
+
+    /**
+     * A plain sieve of all numbers up to {@code limit}.
+     *
+     * @param limit The largest value to test.
+     * @return The primes up to limit, in ascending order.
+     */
+    private static int[] simpleSieve(int limit) {
+        boolean[] composite = new boolean[limit + 1];
+        int[] primes = new int[estimatePrimeCount(limit)];
+        int count = 0;
+
+        for (int p = 2; p <= limit; p++) {
+            if (!composite[p]) {
+                primes[count++] = p;
+                for (long i = (long) p * p; i <= limit; i += p) {
+                    composite[(int) i] = true;
+                }
+            }
+        }
+
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * An upper estimate of pi(n), the amount of primes up to {@code n} (Rosser and Schoenfeld).
+     *
+     * @param n The value.
+     * @return An estimate which is never smaller than the real count.
+     */
+    static int estimatePrimeCount(long n) {
+        if (n < 17) {
+            return 6;
+        }
+
+        double estimate = 1.25506 * n / Math.log(n);
+        return (int) Math.min(Integer.MAX_VALUE - 8, (long) estimate + 1);
+    }
+}
@@ -0,0 +1,165 @@
+package com.llifon.prime.backend;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Generates a prime number sequence using a segmented Sieve of Eratosthenes (see {@link SegmentedSieve}).
+ * <p>
+ * Unlike {@link SieveOfEratosthenesPrimeSequenceGenerator}, this implementation does not allocate a flag for
+ * every number in the requested range. The base primes up to sqrt({@code upTo}) are computed once per sequence,
+ * and the range is then sieved one cache-sized segment at a time as the iterator advances. This allows ranges
+ * which are far away from zero (e.g. [10^9, 10^9 + 10^6]) and ranges up to {@link Long#MAX_VALUE} to be served
+ * without a range-sized heap.
+ * <p>
+ * Note that the base primes are still held in memory, which is roughly 4 bytes per prime up to sqrt({@code upTo}).
+ */
+public class SegmentedSievePrimeSequenceGenerator implements PrimeSequenceGenerator<Long>, LongPrimeSequenceGenerator {
+
+    // The amount of numbers which are sieved at a time
+    private final int segmentSize;
+
+    /**
+     * Creates a new generator which uses the {@link SegmentedSieve#DEFAULT_SEGMENT_SIZE default} segment size.
+     */
+    public SegmentedSievePrimeSequenceGenerator() {
+        this(SegmentedSieve.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new generator.
+     *
+     * @param segmentSize The amount of numbers to sieve at a time. Ideally the segment should fit within the CPU cache.
+     * @throws IllegalArgumentException {segmentSize} must be > 0
+     */
+    public SegmentedSievePrimeSequenceGenerator(int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException(String.format("{segmentSize} (%s) must be > 0", segmentSize));
+        }
+
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return An iterator for all of the numbers that were generated. The numbers are sieved lazily as the
+     * iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public Iterator<Long> generate(Long from, Long upTo, boolean inclusive) {
+        return generateLongs(from, upTo, inclusive);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, without boxing.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return A primitive iterator for all of the numbers that were generated. The numbers are sieved lazily
+     * as the iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public PrimitiveIterator.OfLong generateLongs(long from, long upTo, boolean inclusive) {
+
+        if (from > upTo) {
+            throw new IllegalArgumentException(String.format("{from} (%s) must be less than or equal to {upTo} (%s)", from, upTo));
+        }
+
+        long first = Math.max(from, 2L);
+        long last = inclusive ? upTo : upTo - 1;
+        if (!inclusive && upTo <= 2) {
+            last = 1; // Nothing to generate, and avoids underflowing Long.MIN_VALUE
+        }
+
+        return new SegmentIterator(first, last);
+    }
+
+    /**
+     * Lazily walks through the range one sieved segment at a time.
+     */
+    private class SegmentIterator implements PrimitiveIterator.OfLong {
+
+        // The sieve used for every segment of the range, null if the range is empty
+        private final SegmentedSieve sieve;
+
+        // The last value in the range (inclusive)
+        private final long last;
+
+        // The flags of the current segment
+        private final long[] words;
+
+        // The first value of the current segment
+        private long segmentStart;
+
+        // The amount of numbers in the current segment
+        private int segmentLength;
+
+        // The index of the next prime in the current segment, or -1 if the segment is exhausted
+        private int index = -1;
+
+        SegmentIterator(long first, long last) {
+            this.last = last;
+
+            if (first > last) {
+                this.sieve = null;
+                this.words = null;
+                return;
+            }
+
+            this.sieve = new SegmentedSieve(last);
+            this.words = new long[SegmentedSieve.wordsFor((int) Math.min(segmentSize, last - first + 1))];
+            loadSegment(first);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index < 0) {
+                // Checks for the end of the range without computing segmentStart + segmentLength (which may overflow)
+                if (sieve == null || last - segmentStart < segmentLength) {
+                    return false;
+                }
+
+                loadSegment(segmentStart + segmentLength);
+            }
+
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long prime = segmentStart + index;
+            index = SegmentedSieve.nextSetBit(words, index + 1, segmentLength);
+            return prime;
+        }
+
+        /**
+         * Sieves the segment starting at the given value.
+         *
+         * @param start The first value of the segment.
+         */
+        private void loadSegment(long start) {
+            segmentStart = start;
+            segmentLength = (int) Math.min(segmentSize, last - start + 1);
+            sieve.sieve(segmentStart, segmentLength, words);
+            index = SegmentedSieve.nextSetBit(words, 0, segmentLength);
+        }
+    }
+}
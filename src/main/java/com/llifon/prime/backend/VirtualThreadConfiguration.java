@@ -0,0 +1,120 @@
+package com.llifon.prime.backend;
+
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves every request on its own virtual thread rather than on the bounded Tomcat worker pool, in the
+ * {@link PrimeBackendProperties.ExecutionMode#VIRTUAL virtual} execution mode.
+ * <p>
+ * A request which waits on the database then parks its virtual thread instead of holding on to one of a few hundred
+ * platform threads, so the amount of concurrent requests is bounded by {@code prime.execution.max-connections} (and the
+ * connection pool) rather than by {@code server.tomcat.threads.max}. Streamed exports run on virtual threads as well.
+ * The connection limit only applies in this mode, so the blocking mode keeps the defaults of Tomcat.
+ * <p>
+ * Virtual threads need JDK 21 or newer, which Spring Boot 2.4 and Hibernate 5.4 do not officially support, so this
+ * mode is experimental. The project is still compiled for an older release, so they are looked up reflectively, and on
+ * older runtimes this logs a warning and leaves the blocking mode in place. A virtual thread which blocks inside a
+ * {@code synchronized} block pins its carrier thread, which is why the PostgreSQL driver must be 42.6 or newer, where
+ * query execution is guarded by a {@code ReentrantLock}; older drivers would cap the concurrent queries at the amount
+ * of cores.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "prime.execution", name = "mode", havingValue = "virtual")
+public class VirtualThreadConfiguration implements WebMvcConfigurer, DisposableBean {
+
+    // the class logger
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    // Starts a new virtual thread for every task, or null if the runtime has no virtual threads
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    // The maximum amount of connections that Tomcat accepts
+    private final int maxConnections;
+
+    /**
+     * Creates the configuration of the virtual execution mode.
+     *
+     * @param properties The application configuration.
+     */
+    public VirtualThreadConfiguration(PrimeBackendProperties properties) {
+        this.maxConnections = properties.getExecution().getMaxConnections();
+    }
+
+    /**
+     * Makes Tomcat hand every request to a new virtual thread, and accept as many connections as configured.
+     *
+     * @return The customizer of the embedded Tomcat.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        return factory -> {
+            if (executor == null) {
+                logger.warn("Virtual threads need JDK 21 or newer (running on {}), requests are served by the Tomcat thread pool",
+                        Runtime.version());
+                return;
+            }
+
+            logger.info("Serving requests on virtual threads, with up to {} connections", maxConnections);
+            factory.addProtocolHandlerCustomizers((TomcatProtocolHandlerCustomizer<?>) handler -> {
+                handler.setExecutor(executor);
+                if (handler instanceof AbstractProtocol) {
+                    ((AbstractProtocol<?>) handler).setMaxConnections(maxConnections);
+                }
+            });
+        };
+    }
+
+    /**
+     * Runs asynchronous requests, such as streamed exports, on virtual threads.
+     *
+     * @param configurer The async configuration of Spring MVC.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (executor != null) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+    }
+
+    /**
+     * Stops accepting new tasks once the application shuts down. Tomcat does not shut down executors it did not
+     * create itself.
+     */
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates an executor which starts a new virtual thread for every task, through
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     *
+     * @return The executor, or null if the runtime does not support virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create the virtual thread executor", e);
+        }
+    }
+}
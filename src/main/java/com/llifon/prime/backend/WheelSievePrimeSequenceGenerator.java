@@ -0,0 +1,224 @@
+package com.llifon.prime.backend;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Generates a prime number sequence using a segmented, wheel-factorized Sieve of Eratosthenes (see {@link WheelSieve}).
+ * <p>
+ * Only the numbers which are coprime to 2, 3 and 5 are stored and sieved, bit-packed into {@code long} words, so each
+ * segment covers 3.75 times as many numbers as the same amount of memory in {@link SegmentedSievePrimeSequenceGenerator}
+ * and the multiples of 2, 3 and 5 are never crossed off. The primes 2, 3 and 5 themselves are emitted up-front.
+ */
+public class WheelSievePrimeSequenceGenerator implements PrimeSequenceGenerator<Long>, LongPrimeSequenceGenerator {
+
+    // The primes which are not represented on the wheel
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    // The amount of bytes (blocks of 30 numbers) which are sieved at a time
+    private final int segmentBytes;
+
+    /**
+     * Creates a new generator which uses the {@link WheelSieve#DEFAULT_SEGMENT_BYTES default} segment size.
+     */
+    public WheelSievePrimeSequenceGenerator() {
+        this(WheelSieve.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Creates a new generator.
+     *
+     * @param segmentBytes The amount of bytes to sieve at a time, where each byte covers 30 numbers.
+     *                     Ideally the segment should fit within the CPU cache.
+     * @throws IllegalArgumentException {segmentBytes} must be > 0
+     */
+    public WheelSievePrimeSequenceGenerator(int segmentBytes) {
+        if (segmentBytes < 1) {
+            throw new IllegalArgumentException(String.format("{segmentBytes} (%s) must be > 0", segmentBytes));
+        }
+
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return An iterator for all of the numbers that were generated. The numbers are sieved lazily as the
+     * iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public Iterator<Long> generate(Long from, Long upTo, boolean inclusive) {
+        return generateLongs(from, upTo, inclusive);
+    }
+
+    /**
+     * Generates a sequence of PRIME NUMBERS which exist within a given value range, without boxing.
+     *
+     * @param from      The first number in the range (always inclusive).
+     * @param upTo      The last number in the range (inclusiveness based on {@code inclusive} flag)
+     * @param inclusive If {@code true}, the {@code upTo} value will be included in the output
+     *                  if it itself is a prime number. Otherwise only PRIME NUMBERS which are less than
+     *                  the upper bound will be included.
+     * @return A primitive iterator for all of the numbers that were generated. The numbers are sieved lazily
+     * as the iterator is advanced.
+     *
+     * @throws IllegalArgumentException {from} must be less than or equal to {upTo}
+     */
+    @Override
+    public PrimitiveIterator.OfLong generateLongs(long from, long upTo, boolean inclusive) {
+
+        if (from > upTo) {
+            throw new IllegalArgumentException(String.format("{from} (%s) must be less than or equal to {upTo} (%s)", from, upTo));
+        }
+
+        long first = Math.max(from, 2L);
+        long last = inclusive ? upTo : upTo - 1;
+        if (!inclusive && upTo <= 2) {
+            last = 1; // Nothing to generate, and avoids underflowing Long.MIN_VALUE
+        }
+
+        return new WheelIterator(first, last);
+    }
+
+    /**
+     * Lazily walks through the range one sieved segment at a time.
+     */
+    private class WheelIterator implements PrimitiveIterator.OfLong {
+
+        // The first value in the range
+        private final long first;
+
+        // The last value in the range (inclusive)
+        private final long last;
+
+        // The sieve used for every segment of the range, null if no segment needs sieving
+        private final WheelSieve sieve;
+
+        // The flags of the current segment
+        private final long[] words;
+
+        // The index of the next wheel prime (2, 3, 5) to consider
+        private int wheelPrimeIndex;
+
+        // The first value of the current segment (a multiple of 30)
+        private long segmentStart;
+
+        // The amount of bytes in the current segment
+        private int segmentLength;
+
+        // The next prime to hand out, or -1 if it has not been found yet
+        private long next = -1;
+
+        // The bit index to continue searching the current segment from
+        private long bitIndex;
+
+        // Whether the range has been exhausted
+        private boolean done;
+
+        WheelIterator(long first, long last) {
+            this.first = first;
+            this.last = last;
+
+            if (first > last || last < 7) {
+                this.sieve = null;
+                this.words = null;
+                return;
+            }
+
+            this.sieve = new WheelSieve(last);
+
+            long start = Math.max(first, 7L);
+            long alignedStart = start - start % WheelSieve.WHEEL;
+            this.words = new long[WheelSieve.wordsFor(bytesFrom(alignedStart))];
+            loadSegment(alignedStart);
+            this.bitIndex = WheelSieve.bitIndexAtOrAfter(alignedStart, start);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) {
+                return true;
+            }
+
+            // The primes which are not on the wheel come first
+            while (wheelPrimeIndex < WHEEL_PRIMES.length) {
+                long prime = WHEEL_PRIMES[wheelPrimeIndex++];
+                if (prime >= first && prime <= last) {
+                    next = prime;
+                    return true;
+                }
+            }
+
+            while (!done && sieve != null) {
+                long bitCount = (long) segmentLength << 3;
+                if (bitIndex < bitCount) {
+                    int index = SegmentedSieve.nextSetBit(words, (int) bitIndex, (int) bitCount);
+                    if (index >= 0) {
+                        // Works in offsets relative to the segment so that nothing overflows near Long.MAX_VALUE
+                        long offset = (long) (index >>> 3) * WheelSieve.WHEEL + WheelSieve.RESIDUES[index & 7];
+                        if (offset > last - segmentStart) {
+                            done = true;
+                            return false;
+                        }
+
+                        bitIndex = index + 1;
+                        next = segmentStart + offset;
+                        return true;
+                    }
+                }
+
+                // Checks for the end of the range without computing the start of the next segment (which may overflow)
+                long segmentSpan = (long) segmentLength * WheelSieve.WHEEL;
+                if (last - segmentStart < segmentSpan) {
+                    done = true;
+                    return false;
+                }
+
+                loadSegment(segmentStart + segmentSpan);
+            }
+
+            return false;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long prime = next;
+            next = -1;
+            return prime;
+        }
+
+        /**
+         * Gets the amount of bytes needed for a segment starting at the given value.
+         *
+         * @param start The first value of the segment (a multiple of 30).
+         * @return The amount of bytes, which is at most the configured segment size.
+         */
+        private int bytesFrom(long start) {
+            return (int) Math.min(segmentBytes, (last - start) / WheelSieve.WHEEL + 1);
+        }
+
+        /**
+         * Sieves the segment starting at the given value.
+         *
+         * @param start The first value of the segment (a multiple of 30).
+         */
+        private void loadSegment(long start) {
+            segmentStart = start;
+            segmentLength = bytesFrom(start);
+            sieve.sieve(segmentStart, segmentLength, words);
+            bitIndex = 0;
+        }
+    }
+}
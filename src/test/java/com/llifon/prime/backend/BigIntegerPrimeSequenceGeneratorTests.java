@@ -110,7 +110,7 @@ public class BigIntegerPrimeSequenceGeneratorTests {
         Instant now = Instant.now();
 
         BigIntegerPrimeSequenceGenerator generator = new BigIntegerPrimeSequenceGenerator();
-        generator.generate(BigInteger.TWO, BigInteger.valueOf(1000000), true);
+        generator.generate(BigInteger.TWO, BigInteger.valueOf(1000000), true).forEachRemaining(p -> { });
         Instant end = Instant.now();
 
         System.out.printf("BigInteger implementation took %d ms to execute 1 range of 2 - 1,000,000",
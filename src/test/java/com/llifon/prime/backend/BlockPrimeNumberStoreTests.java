@@ -0,0 +1,181 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for {@link BlockPrimeNumberStore}, over an in-memory H2 database.
+ * <p>
+ * The tests are not transactional, so that every call of the store commits on its own, as it does in the application.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BlockPrimeNumberStoreTests {
+
+    // The end of the stored range, which spans the first few blocks and ends part-way into the last one
+    private static final long UP_TO = 3 * PrimeBlockCodec.BLOCK_SPAN + 40000;
+
+    // The amount of primes which are written at once, so that consecutive chunks share the blocks at their edges
+    private static final int CHUNK_SIZE = 1000;
+
+    // The primes up to UP_TO, which the store is checked against
+    private final PrimeIndex reference = PrimeIndex.build(UP_TO);
+
+    @Autowired
+    private PrimeBlockRepository blocks;
+
+    @Autowired
+    private PrimeCheckpointRepository checkpoints;
+
+    // The store under test
+    private BlockPrimeNumberStore store;
+
+    @BeforeEach
+    void setUp() {
+        blocks.deleteAll();
+        checkpoints.deleteAll();
+        store = new BlockPrimeNumberStore(blocks, checkpoints);
+    }
+
+    /**
+     * Tests that chunks which share blocks are merged into them, whatever order they are written in.
+     */
+    @Test
+    void chunksAreMergedIntoSharedBlocks() {
+        long[] primes = reference.page(0, UP_TO, 0, Integer.MAX_VALUE);
+
+        // The chunks are written backwards, so that every shared block is merged into rather than created
+        for (int end = primes.length; end > 0; end -= CHUNK_SIZE) {
+            int start = Math.max(0, end - CHUNK_SIZE);
+            store.write(Arrays.copyOfRange(primes, start, end), end - start);
+        }
+
+        assertThat(blocks.count()).isEqualTo(PrimeBlockCodec.blockOf(UP_TO) + 1);
+        assertThat(store.countPrimes()).isEqualTo(reference.getPrimeCount());
+        assertThat(store.getSmallestPrime()).isEqualTo(2);
+        assertThat(store.getLargestPrime()).isEqualTo(reference.getLargestPrime());
+        assertThat(store.findPage(0, UP_TO, 0, Integer.MAX_VALUE)).containsExactlyElementsOf(boxed(primes));
+    }
+
+    /**
+     * Tests that ranges whose ends fall part-way into blocks are counted exactly, including ranges within a single
+     * block and across neighbouring ones.
+     */
+    @Test
+    void rangesWithPartialBlocksAreCounted() {
+        writeAll();
+
+        long span = PrimeBlockCodec.BLOCK_SPAN;
+        long[][] ranges = {{1000, 2000}, {span - 100, span + 100}, {100000, 3 * span + 1000}, {span, 2 * span - 1},
+                {0, UP_TO}, {5, 4}};
+        for (long[] range : ranges) {
+            assertThat(store.countPrimesInRange(range[0], range[1]))
+                    .as("primes in [%s, %s]", range[0], range[1])
+                    .isEqualTo(range[0] > range[1] ? 0 : reference.count(range[0], range[1]));
+        }
+    }
+
+    /**
+     * Tests that pages which skip several whole blocks, and start and end part-way into blocks, are decoded exactly.
+     */
+    @Test
+    void pagesSkipAcrossSeveralBlocks() {
+        writeAll();
+
+        long span = PrimeBlockCodec.BLOCK_SPAN;
+        long from = 1000;
+        long to = 3 * span + 1000;
+
+        // A block holds about 20,000 primes at this size, so these pages skip zero, one, two and nearly three blocks
+        for (int pageIndex : new int[]{0, 250, 450, 580}) {
+            assertThat(store.findPage(from, to, pageIndex, 100))
+                    .as("page %s", pageIndex)
+                    .containsExactlyElementsOf(boxed(reference.page(from, to, pageIndex * 100L, 100)));
+        }
+
+        assertThat(store.findPrimesStartingAt(span - 500, span + 500, 1000))
+                .containsExactlyElementsOf(boxed(reference.page(span - 500, span + 500, 0, 1000)));
+        assertThat(store.findPrimesAfter(reference.getLargestPrime(), UP_TO, 10)).isEmpty();
+    }
+
+    /**
+     * Tests that deleting after a value in the middle of a block keeps the primes before it, and that the block can
+     * be written to again.
+     */
+    @Test
+    void deleteAfterClearsPartOfABlock() {
+        writeAll();
+
+        long value = 2 * PrimeBlockCodec.BLOCK_SPAN + 12345;
+        store.deleteAfter(value);
+
+        assertThat(blocks.count()).isEqualTo(PrimeBlockCodec.blockOf(value) + 1);
+        assertThat(store.getLargestPrime()).isEqualTo(reference.previousPrime(value + 1));
+        assertThat(store.countPrimes()).isEqualTo(reference.countUpTo(value));
+        assertThat(store.countPrimesInRange(value - 1000, UP_TO)).isEqualTo(reference.count(value - 1000, value));
+
+        // The rest of the partial block is merged into it again
+        long[] rest = reference.page(value + 1, UP_TO, 0, Integer.MAX_VALUE);
+        store.write(rest, rest.length);
+        assertThat(store.countPrimes()).isEqualTo(reference.getPrimeCount());
+        assertThat(store.getLargestPrime()).isEqualTo(reference.getLargestPrime());
+    }
+
+    /**
+     * Tests that a block which is left without primes is deleted, rather than kept with an empty summary.
+     */
+    @Test
+    void deleteAfterDropsBlocksLeftEmpty() {
+        writeAll();
+
+        // The first number of block 2 is even, so nothing of that block is kept
+        long value = 2 * PrimeBlockCodec.BLOCK_SPAN;
+        store.deleteAfter(value);
+
+        assertThat(blocks.count()).isEqualTo(2);
+        assertThat(store.getLargestPrime()).isEqualTo(reference.previousPrime(value));
+        assertThat(store.countPrimes()).isEqualTo(reference.countUpTo(value));
+    }
+
+    /**
+     * Tests that the checkpoint is absent until it is recorded.
+     */
+    @Test
+    void checkpointIsRecorded() {
+        assertThat(store.getCompletedUpTo()).isEqualTo(-1);
+
+        store.markCompletedUpTo(UP_TO);
+        assertThat(store.getCompletedUpTo()).isEqualTo(UP_TO);
+    }
+
+    /**
+     * Writes every prime up to {@link #UP_TO}, chunk by chunk in ascending order.
+     */
+    private void writeAll() {
+        long[] primes = reference.page(0, UP_TO, 0, Integer.MAX_VALUE);
+        for (int start = 0; start < primes.length; start += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, primes.length - start);
+            store.write(Arrays.copyOfRange(primes, start, start + count), count);
+        }
+    }
+
+    /**
+     * Boxes primes, to compare them with those returned by the store.
+     *
+     * @param primes The primes.
+     * @return The boxed primes.
+     */
+    private static List<Long> boxed(long[] primes) {
+        return Arrays.stream(primes).boxed().collect(Collectors.toList());
+    }
+}
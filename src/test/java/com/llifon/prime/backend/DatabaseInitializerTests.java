@@ -0,0 +1,176 @@
+package com.llifon.prime.backend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Unit tests for {@link DatabaseInitializer}, over an in-memory store.
+ */
+public class DatabaseInitializerTests {
+
+    // The amount of primes below 10^6
+    private static final long PRIMES_BELOW_MILLION = 78498;
+
+    // The longest that a population of the tests may take, so that a pipeline which is stuck fails rather than hangs
+    private static final Duration RUN_TIMEOUT = Duration.ofSeconds(60);
+
+    /**
+     * Tests that a full run stores exactly the primes below the bound and checkpoints them, even though the writers
+     * finish the chunks out of order.
+     */
+    @Test
+    void fullRunStoresEveryPrime() {
+        var firstWritten = new CountDownLatch(1);
+        var store = new InMemoryPrimeNumberStore() {
+            @Override
+            public void write(long[] chunk, int count) {
+                // The chunk holding 2 waits until another one has been written, so that the writers finish out of order
+                if (chunk[0] == 2) {
+                    try {
+                        firstWritten.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.write(chunk, count);
+                firstWritten.countDown();
+            }
+        };
+
+        run(initializerOver(store, 1000000));
+
+        assertThat(store.writes.get(0)).isNotEqualTo(2);
+        assertThat(store.primes).hasSize((int) PRIMES_BELOW_MILLION);
+        assertThat(store.primes).containsExactlyElementsOf(
+                new SegmentedSievePrimeSequenceGenerator().longStream(2, 1000000, false).boxed().collect(Collectors.toList()));
+        assertThat(store.completedUpTo).isEqualTo(999999);
+        assertThat(store.deletions).isEmpty();
+    }
+
+    /**
+     * Tests that a writer which fails stops the sieve workers, and that whatever was written is discarded without
+     * being checkpointed.
+     */
+    @Test
+    void failedWriterDiscardsThePopulation() {
+        var writes = new AtomicInteger();
+        var store = new InMemoryPrimeNumberStore() {
+            @Override
+            public void write(long[] chunk, int count) {
+                if (writes.incrementAndGet() == 5) {
+                    throw new IllegalStateException("The store is unavailable");
+                }
+                super.write(chunk, count);
+            }
+        };
+
+        // Without cancelling the sieve workers, they would wait for the failed writer's chunks forever
+        run(initializerOver(store, 100000000));
+
+        assertThat(store.deletions).containsExactly(1L);
+        assertThat(store.primes).isEmpty();
+        assertThat(store.completedUpTo).isEqualTo(1);
+        assertThat(writes.get()).isLessThan(1000);
+    }
+
+    /**
+     * Tests that a population which did not finish is resumed from its checkpoint, after discarding everything that
+     * was written past it.
+     */
+    @Test
+    void unfinishedPopulationResumesFromItsCheckpoint() {
+        var store = new InMemoryPrimeNumberStore();
+        store.fillBelow(600000);
+        store.completedUpTo = 500000;
+
+        run(initializerOver(store, 1000000));
+
+        assertThat(store.deletions).containsExactly(500000L);
+        assertThat(store.writes.stream().mapToLong(Long::longValue).min().getAsLong()).isEqualTo(500009);
+        assertThat(store.primes).hasSize((int) PRIMES_BELOW_MILLION);
+        assertThat(store.completedUpTo).isEqualTo(999999);
+    }
+
+    /**
+     * Tests that a store which is already checkpointed up to the bound is left alone.
+     */
+    @Test
+    void completeStoreIsSkipped() {
+        var store = new InMemoryPrimeNumberStore();
+        store.fillBelow(1000);
+        store.completedUpTo = 999999;
+
+        run(initializerOver(store, 1000000));
+
+        assertThat(store.writes).isEmpty();
+        assertThat(store.deletions).isEmpty();
+    }
+
+    /**
+     * Creates an initializer with several sieve workers and writers, and small segments and chunks.
+     *
+     * @param store The store to populate.
+     * @param upTo  The end of the range to populate (exclusive).
+     * @return The initializer.
+     */
+    private static DatabaseInitializer initializerOver(PrimeNumberStore store, long upTo) {
+        var properties = new PrimeBackendProperties();
+        properties.getPopulation().setUpTo(upTo);
+        properties.getPopulation().setSegmentSize(30000);
+        properties.getPopulation().setParallelism(4);
+        properties.getPopulation().setWriters(4);
+        properties.getPopulation().setWriteBatchSize(1000);
+
+        var metrics = new PrimeMetrics(new SimpleMeterRegistry());
+        return new DatabaseInitializer(store, new PrimeDatasetBoundsHolder(store, metrics), properties, metrics);
+    }
+
+    /**
+     * Runs a population, failing if it does not stop in time.
+     *
+     * @param initializer The initializer.
+     */
+    private static void run(DatabaseInitializer initializer) {
+        assertTimeoutPreemptively(RUN_TIMEOUT, () -> initializer.run(null));
+    }
+
+    /**
+     * Tests that the sieve workers use half of the L2 cache, unless that takes too much of the heap.
+     */
+    @Test
+    void sieveBytesFollowL2CacheAndHeap() {
+        assertThat(DatabaseInitializer.sieveBytesFor(2048 * 1024, 4L << 30, 8)).isEqualTo(1024 * 1024);
+        assertThat(DatabaseInitializer.sieveBytesFor(2048 * 1024, 64L << 20, 8)).isEqualTo(1024 * 1024);
+        assertThat(DatabaseInitializer.sieveBytesFor(2048 * 1024, 16L << 20, 8)).isEqualTo(256 * 1024);
+        assertThat(DatabaseInitializer.sieveBytesFor(16 * 1024, 4L << 30, 8)).isEqualTo(WheelSieve.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Tests that large ranges are split into cache-sized segments, and small ones still keep every worker busy.
+     */
+    @Test
+    void segmentSizeFollowsCacheAndRange() {
+        assertThat(DatabaseInitializer.segmentSizeFor(10000000000L, 8, 1024 * 1024)).isEqualTo(30L * 1024 * 1024);
+        assertThat(DatabaseInitializer.segmentSizeFor(10000000L, 8, 1024 * 1024)).isEqualTo(10000000L / 32);
+        assertThat(DatabaseInitializer.segmentSizeFor(10L, 8, 1024 * 1024)).isEqualTo(30);
+    }
+
+    /**
+     * Tests that the cache sizes reported by Linux are parsed with their units.
+     */
+    @Test
+    void parsesCacheSizes() {
+        assertThat(DatabaseInitializer.parseCacheSize("2048K")).isEqualTo(2048 * 1024);
+        assertThat(DatabaseInitializer.parseCacheSize("1M")).isEqualTo(1024 * 1024);
+        assertThat(DatabaseInitializer.parseCacheSize("262144")).isEqualTo(262144);
+    }
+}
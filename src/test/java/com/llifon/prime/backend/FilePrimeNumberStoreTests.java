@@ -0,0 +1,55 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link FilePrimeNumberStore}.
+ */
+public class FilePrimeNumberStoreTests {
+
+    /**
+     * Tests that written primes become readable once the store is flushed.
+     */
+    @Test
+    void writtenPrimesAreReadableAfterFlush(@TempDir Path directory) throws IOException {
+        var store = new FilePrimeNumberStore(propertiesFor(directory));
+        store.write(new long[]{2, 3, 5, 7, 11, 13, 17, 19, 23, 29}, 10);
+        store.flush();
+
+        assertThat(store.countPrimes()).isEqualTo(10);
+        assertThat(store.getLargestPrime()).isEqualTo(29);
+        assertThat(store.findPrimesStartingAt(10, 20, 10)).containsExactly(11L, 13L, 17L, 19L);
+    }
+
+    /**
+     * Tests that values which are not on the wheel are rejected, rather than marking the next candidate as prime.
+     */
+    @Test
+    void valuesOffTheWheelAreRejected(@TempDir Path directory) throws IOException {
+        var store = new FilePrimeNumberStore(propertiesFor(directory));
+
+        for (long value : new long[]{4, 9, 25, 27}) {
+            assertThatIllegalArgumentException()
+                    .isThrownBy(() -> store.write(new long[]{value}, 1))
+                    .withMessageContaining(value + " is not a prime");
+        }
+    }
+
+    /**
+     * Creates the configuration of a store whose index file lives in the given directory.
+     *
+     * @param directory The directory.
+     * @return The configuration.
+     */
+    private static PrimeBackendProperties propertiesFor(Path directory) {
+        var properties = new PrimeBackendProperties();
+        properties.getStorage().setFile(directory.resolve("primes.idx").toString());
+        return properties;
+    }
+}
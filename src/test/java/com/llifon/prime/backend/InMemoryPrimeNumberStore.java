@@ -0,0 +1,93 @@
+package com.llifon.prime.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link PrimeNumberStore} which holds its primes in memory, and records what it was asked to do, for the tests of
+ * the jobs which write to a store.
+ */
+class InMemoryPrimeNumberStore implements PrimeNumberStore {
+
+    // The stored primes
+    final NavigableSet<Long> primes = new ConcurrentSkipListSet<>();
+
+    // The first prime of every written chunk, in the order in which the chunks were written
+    final List<Long> writes = Collections.synchronizedList(new ArrayList<>());
+
+    // The values after which the primes were deleted, in order
+    final List<Long> deletions = Collections.synchronizedList(new ArrayList<>());
+
+    // The checkpoint of the store
+    volatile long completedUpTo = -1;
+
+    @Override
+    public Long getSmallestPrime() {
+        return primes.isEmpty() ? null : primes.first();
+    }
+
+    @Override
+    public Long getLargestPrime() {
+        return primes.isEmpty() ? null : primes.last();
+    }
+
+    @Override
+    public long countPrimes() {
+        return primes.size();
+    }
+
+    @Override
+    public long countPrimesInRange(long start, long end) {
+        return start > end ? 0 : primes.subSet(start, true, end, true).size();
+    }
+
+    @Override
+    public List<Long> findPage(long start, long end, int pageIndex, int pageSize) {
+        return start > end ? List.of() : primes.subSet(start, true, end, true).stream()
+                .skip((long) pageIndex * pageSize)
+                .limit(pageSize)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findPrimesStartingAt(long start, long end, int limit) {
+        return findPage(start, end, 0, limit);
+    }
+
+    @Override
+    public void write(long[] chunk, int count) {
+        writes.add(chunk[0]);
+        for (int i = 0; i < count; i++) {
+            primes.add(chunk[i]);
+        }
+    }
+
+    @Override
+    public long getCompletedUpTo() {
+        return completedUpTo;
+    }
+
+    @Override
+    public void markCompletedUpTo(long value) {
+        completedUpTo = value;
+    }
+
+    @Override
+    public void deleteAfter(long value) {
+        deletions.add(value);
+        primes.tailSet(value, false).clear();
+    }
+
+    /**
+     * Stores every prime below a value, as a previous population would have.
+     *
+     * @param to The end of the range (exclusive).
+     */
+    void fillBelow(long to) {
+        new SegmentedSievePrimeSequenceGenerator().longStream(2, to, false).forEach(primes::add);
+    }
+}
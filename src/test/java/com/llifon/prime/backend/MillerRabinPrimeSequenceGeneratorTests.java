@@ -0,0 +1,149 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class MillerRabinPrimeSequenceGeneratorTests {
+
+    /**
+     * Tests that the FINAL value in a sequence is the same as the {@code upTo} parameter, if the value
+     * itself is a prime number and the {@code inclusive} flag is set to {@code true}.
+     */
+    @Test
+    public void includesFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToTrue() {
+        MillerRabinPrimeSequenceGenerator generator = new MillerRabinPrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, true);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L, 13L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that the FINAL value in a sequence is less than the {@code upTo} parameter, if the value
+     * itself is a prime number but the {@code inclusive} flag is set to {@code false}.
+     */
+    @Test
+    public void omitFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToFalse() {
+        MillerRabinPrimeSequenceGenerator generator = new MillerRabinPrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, false);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown if the FROM value is larger than the UPTO value.
+     */
+    @Test
+    public void exceptionThrownIfFromIsLargerThanUpTo() {
+        MillerRabinPrimeSequenceGenerator generator = new MillerRabinPrimeSequenceGenerator();
+
+        assertThatThrownBy(() -> generator.generate(2L, 1L, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{from} (2) must be less than or equal to {upTo} (1)");
+    }
+
+    /**
+     * Tests that the generator agrees with the segmented sieve, for small ranges and a range beyond the sieve limit
+     * of the on-demand source.
+     */
+    @Test
+    public void sequenceMatchesSegmentedSieve() {
+        var reference = new SegmentedSievePrimeSequenceGenerator();
+        var generator = new MillerRabinPrimeSequenceGenerator();
+
+        for (long from = 0; from < 60; from++) {
+            for (long upTo = from; upTo < from + 2000; upTo += 37) {
+                assertThat(generator.longStream(from, upTo, true).toArray())
+                        .containsExactly(reference.longStream(from, upTo, true).toArray());
+            }
+        }
+
+        assertThat(generator.longStream(0, 3000000L, false).toArray())
+                .containsExactly(reference.longStream(0, 3000000L, false).toArray());
+
+        long from = OnDemandPrimeSource.SIEVE_LIMIT * 10;
+        assertThat(generator.longStream(from, from + 100000L, true).toArray())
+                .containsExactly(reference.longStream(from, from + 100000L, true).toArray());
+    }
+
+    /**
+     * Tests that strong pseudoprimes to small bases, Carmichael numbers and squares of large primes are rejected,
+     * while large primes are accepted.
+     */
+    @Test
+    public void testIsExactForHardCases() {
+        long[] composites = {
+                561L, 1105L, 1729L, 2047L, 1373653L, 25326001L, 3215031751L, 2152302898747L, 3474749660383L,
+                341550071728321L, 3825123056546413051L, 3037000493L * 3037000493L, 3037000493L * 3037000453L,
+                Long.MAX_VALUE};
+        for (long composite : composites) {
+            assertThat(MillerRabin.isPrime(composite)).as("%s", composite).isFalse();
+        }
+
+        long[] primes = {2L, 3L, 5L, 53L, 59L, 3037000493L, (1L << 61) - 1, 4611686018427387847L, Long.MAX_VALUE - 24};
+        for (long prime : primes) {
+            assertThat(MillerRabin.isPrime(prime)).as("%s", prime).isTrue();
+        }
+    }
+
+    /**
+     * Tests that the test agrees with {@link BigInteger#isProbablePrime} for random numbers of every size.
+     */
+    @Test
+    public void testMatchesBigInteger() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long n = random.nextLong() >>> (1 + random.nextInt(62));
+            assertThat(MillerRabin.isPrime(n)).as("%s", n).isEqualTo(BigInteger.valueOf(n).isProbablePrime(64));
+        }
+    }
+
+    /**
+     * Tests that ranges which end at {@link Long#MAX_VALUE} stop without overflowing.
+     */
+    @Test
+    public void rangeEndsAtLongMaxValue() {
+        MillerRabinPrimeSequenceGenerator generator = new MillerRabinPrimeSequenceGenerator();
+
+        assertThat(generator.longStream(Long.MAX_VALUE - 100, Long.MAX_VALUE, true).toArray())
+                .containsExactly(9223372036854775783L);
+    }
+
+    /**
+     * Tests the performance of the implementation.
+     */
+    @Test
+    public void measurePerformance() {
+        Instant now = Instant.now();
+
+        MillerRabinPrimeSequenceGenerator generator = new MillerRabinPrimeSequenceGenerator();
+        generator.generateLongs(1000000000000000000L, 1000000000010000000L, true).forEachRemaining((long p) -> { });
+        Instant end = Instant.now();
+
+        System.out.printf("Miller-Rabin implementation took %d ms to execute 1 range of 10^18 - 10^18 + 10,000,000",
+                Duration.between(now, end).toMillis());
+    }
+}
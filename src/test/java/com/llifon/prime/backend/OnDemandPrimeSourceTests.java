@@ -0,0 +1,89 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link OnDemandPrimeSource}.
+ */
+public class OnDemandPrimeSourceTests {
+
+    /**
+     * Creates a source with the given budget.
+     *
+     * @param maxSpan The maximum amount of numbers that a request may search through.
+     * @return The source.
+     */
+    private static OnDemandPrimeSource sourceWithSpan(long maxSpan) {
+        var properties = new PrimeBackendProperties();
+        properties.getOnDemand().setEnabled(true);
+        properties.getOnDemand().setMaxSpan(maxSpan);
+        properties.getOnDemand().setTimeBudget(Duration.ofSeconds(10));
+        return new OnDemandPrimeSource(properties);
+    }
+
+    /**
+     * Tests that pages are sliced out of the sieved primes of a range.
+     */
+    @Test
+    void sievedPagesMatchTheRange() {
+        var source = sourceWithSpan(1000000);
+
+        assertThat(source.generate(100, 200, 0, 3)).containsExactly(101L, 103L, 107L);
+        assertThat(source.generate(100, 200, 19, 5)).containsExactly(197L, 199L);
+        assertThat(source.generate(100, 200, 21, 5)).isEmpty();
+    }
+
+    /**
+     * Tests that ranges beyond the sieve limit agree with the sieve.
+     */
+    @Test
+    void largeRangesMatchTheSieve() {
+        var source = sourceWithSpan(1000000);
+        long from = OnDemandPrimeSource.SIEVE_LIMIT * 1000;
+
+        long[] expected = new SegmentedSievePrimeSequenceGenerator().longStream(from, from + 2000, true).toArray();
+
+        assertThat(source.generate(from, from + 2000, 0, 1000)).containsExactly(
+                Arrays.stream(expected).boxed().toArray(Long[]::new));
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown for pages which lie past the budget.
+     */
+    @Test
+    void pagesBeyondTheBudgetAreRejected() {
+        var source = sourceWithSpan(1000);
+
+        assertThat(source.generate(0, 100000, 0, 10)).hasSize(10);
+        assertThatIllegalArgumentException().isThrownBy(() -> source.generate(0, 100000, 1000, 10));
+    }
+
+    /**
+     * Tests that a range which is generated in full is checked against the span budget up-front.
+     */
+    @Test
+    void wholeRangesBeyondTheSpanAreRejected() {
+        var source = sourceWithSpan(1000);
+
+        source.requireWithinSpan(5000, 6000);
+        source.requireWithinSpan(6000, 5000);
+        assertThatIllegalArgumentException().isThrownBy(() -> source.requireWithinSpan(5000, 6001));
+    }
+
+    /**
+     * Tests that a deadline which is shared between several calls is not restarted by them.
+     */
+    @Test
+    void sharedDeadlineIsNotRestarted() {
+        var source = sourceWithSpan(1000000);
+
+        assertThat(source.generate(0, 100000, 0, 10, source.newDeadline())).hasSize(10);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> source.generate(0, 100000, 0, 1000, System.nanoTime() - 1));
+    }
+}
@@ -0,0 +1,86 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParallelSegmentedSievePrimeSequenceGeneratorTests {
+
+    /**
+     * Tests that the FINAL value in a sequence is the same as the {@code upTo} parameter, if the value
+     * itself is a prime number and the {@code inclusive} flag is set to {@code true}.
+     */
+    @Test
+    public void includesFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToTrue() {
+        ParallelSegmentedSievePrimeSequenceGenerator generator = new ParallelSegmentedSievePrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, true);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L, 13L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown if the FROM value is larger than the UPTO value.
+     */
+    @Test
+    public void exceptionThrownIfFromIsLargerThanUpTo() {
+        ParallelSegmentedSievePrimeSequenceGenerator generator = new ParallelSegmentedSievePrimeSequenceGenerator();
+
+        assertThatThrownBy(() -> generator.generate(2L, 1L, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{from} (2) must be less than or equal to {upTo} (1)");
+    }
+
+    /**
+     * Tests that the primes are handed out in ascending order, even when the blocks are sieved in parallel.
+     */
+    @Test
+    public void parallelSequenceMatchesSequentialSequence() {
+        long[] expected = new SegmentedSievePrimeSequenceGenerator().longStream(1000L, 500000L, true).toArray();
+
+        for (int segmentSize : new int[]{7, 100, 4096}) {
+            var pool = new ForkJoinPool(4);
+            try {
+                var generator = new ParallelSegmentedSievePrimeSequenceGenerator(pool, segmentSize);
+
+                var iterated = new ArrayList<Long>();
+                generator.generateLongs(1000L, 500000L, true).forEachRemaining((long p) -> iterated.add(p));
+
+                assertThat(iterated).containsExactly(Arrays.stream(expected).boxed().toArray(Long[]::new));
+                assertThat(pool.submit(() -> generator.longStream(1000L, 500000L, true).toArray()).join())
+                        .containsExactly(expected);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Tests the performance of the implementation.
+     */
+    @Test
+    public void measurePerformance() {
+        Instant now = Instant.now();
+
+        ParallelSegmentedSievePrimeSequenceGenerator generator = new ParallelSegmentedSievePrimeSequenceGenerator();
+        long count = generator.longStream(2L, 100000000L, true).count();
+        Instant end = Instant.now();
+
+        System.out.printf("Parallel implementation took %d ms to find %d primes in 1 range of 2 - 100,000,000",
+                Duration.between(now, end).toMillis(), count);
+    }
+}
@@ -0,0 +1,78 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeBlockCodec}.
+ */
+public class PrimeBlockCodecTests {
+
+    /**
+     * Tests that primes encoded into blocks are decoded and counted exactly, for ranges around the wheel primes
+     * and across block boundaries.
+     */
+    @Test
+    void blocksRoundTripThePrimes() {
+        long upTo = 3 * PrimeBlockCodec.BLOCK_SPAN;
+        var generator = new SegmentedSievePrimeSequenceGenerator();
+        long[] primes = generator.longStream(0, upTo, false).toArray();
+
+        Map<Long, byte[]> blocks = new HashMap<>();
+        for (long prime : primes) {
+            long block = PrimeBlockCodec.blockOf(prime);
+            PrimeBlockCodec.add(blocks.computeIfAbsent(block, b -> PrimeBlockCodec.emptyPayload()), block, prime);
+        }
+
+        long span = PrimeBlockCodec.BLOCK_SPAN;
+        long[][] ranges = {{0, 10}, {3, 5}, {6, 6}, {0, upTo - 1}, {span - 100, span + 100}, {span, 2 * span - 1}};
+        for (long[] range : ranges) {
+            List<Long> decoded = new ArrayList<>();
+            long count = 0;
+            for (long block = PrimeBlockCodec.blockOf(range[0]); block <= PrimeBlockCodec.blockOf(range[1]); block++) {
+                count += PrimeBlockCodec.count(blocks.get(block), block, range[0], range[1]);
+                PrimeBlockCodec.decode(blocks.get(block), block, range[0], range[1], Integer.MAX_VALUE, decoded::add);
+            }
+
+            long[] expected = generator.longStream(range[0], range[1], true).toArray();
+            assertThat(count).isEqualTo(expected.length);
+            assertThat(decoded).containsExactly(Arrays.stream(expected).boxed().toArray(Long[]::new));
+        }
+
+        assertThat(PrimeBlockCodec.last(blocks.get(2L), 2)).isEqualTo(primes[primes.length - 1]);
+    }
+
+    /**
+     * Tests that decoding stops at the limit.
+     */
+    @Test
+    void decodeStopsAtTheLimit() {
+        byte[] payload = PrimeBlockCodec.emptyPayload();
+        for (long prime : new long[]{2, 3, 5, 7, 11, 13}) {
+            PrimeBlockCodec.add(payload, 0, prime);
+        }
+
+        List<Long> decoded = new ArrayList<>();
+        assertThat(PrimeBlockCodec.decode(payload, 0, 3, 100, 4, decoded::add)).isEqualTo(4);
+        assertThat(decoded).containsExactly(3L, 5L, 7L, 11L);
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown for values which cannot be stored in a block.
+     */
+    @Test
+    void invalidValuesAreRejected() {
+        byte[] payload = PrimeBlockCodec.emptyPayload();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeBlockCodec.add(payload, 0, 9));
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeBlockCodec.add(payload, 1, 7));
+        assertThat(PrimeBlockCodec.last(payload, 0)).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,27 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeBulkLoader}.
+ */
+public class PrimeBulkLoaderTests {
+
+    /**
+     * Tests that primes are encoded as one decimal number per line, including numbers of the largest width.
+     */
+    @Test
+    void rowsAreEncodedInTheCopyTextFormat() {
+        long[] primes = {2, 3, 97, 1000003, Long.MAX_VALUE - 24, 0};
+        byte[] rows = new byte[primes.length * 20];
+
+        int length = PrimeBulkLoader.encodeRows(primes, 5, rows);
+
+        assertThat(new String(rows, 0, length, StandardCharsets.US_ASCII))
+                .isEqualTo("2\n3\n97\n1000003\n9223372036854775783\n");
+    }
+}
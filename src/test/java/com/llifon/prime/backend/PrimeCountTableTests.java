@@ -0,0 +1,61 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeCountTable}.
+ */
+public class PrimeCountTableTests {
+
+    /**
+     * Tests that the table agrees with the full prime index, including values around the block boundaries.
+     */
+    @Test
+    void countsMatchPrimeIndex() {
+        long upperBound = 3 * PrimeCountTable.BLOCK_SPAN + 1000;
+        var table = PrimeCountTable.build(upperBound);
+        var index = PrimeIndex.build(upperBound);
+
+        for (long x = 0; x <= upperBound; x += 997) {
+            assertThat(table.countUpTo(x)).isEqualTo(index.countUpTo(x));
+        }
+
+        for (long block = 1; block <= 3; block++) {
+            long boundary = block * PrimeCountTable.BLOCK_SPAN;
+            assertThat(table.countUpTo(boundary - 1)).isEqualTo(index.countUpTo(boundary - 1));
+            assertThat(table.countUpTo(boundary)).isEqualTo(index.countUpTo(boundary));
+        }
+
+        for (long k = 0; k < index.getPrimeCount(); k += 101) {
+            assertThat(table.select(k)).isEqualTo(index.select(k));
+        }
+        assertThat(table.select(index.getPrimeCount() - 1)).isEqualTo(index.getLargestPrime());
+    }
+
+    /**
+     * Tests that the start of a page can be found without walking the primes before it.
+     */
+    @Test
+    void pageStartFindsTheFirstPrimeOfThePage() {
+        var table = PrimeCountTable.build(1000);
+
+        assertThat(table.pageStart(1, 10, 0, 2)).isEqualTo(2);
+        assertThat(table.pageStart(1, 10, 1, 2)).isEqualTo(5);
+        assertThat(table.pageStart(1, 11, 2, 2)).isEqualTo(11);
+        assertThat(table.pageStart(1, 10, 2, 2)).isEqualTo(-1);
+        assertThat(table.count(100, 200)).isEqualTo(21);
+    }
+
+    /**
+     * Tests that values past the table are rejected.
+     */
+    @Test
+    void valuesPastTheUpperBoundAreRejected() {
+        var table = PrimeCountTable.build(1000);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> table.countUpTo(1001));
+        assertThatIllegalArgumentException().isThrownBy(() -> table.select(168));
+    }
+}
@@ -0,0 +1,98 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PrimeExportWriterTests {
+
+    /**
+     * Tests that NDJSON exports hold one number per line.
+     */
+    @Test
+    void ndjsonHoldsOneNumberPerLine() throws IOException {
+        var output = new ByteArrayOutputStream();
+        var writer = new PrimeExportWriter(PrimeExportFormat.NDJSON, output);
+        writer.write(List.of(2L, 3L, 5L, 9223372036854775783L));
+        writer.finish();
+
+        assertThat(output.toString(StandardCharsets.US_ASCII)).isEqualTo("2\n3\n5\n9223372036854775783\n");
+        assertThat(writer.getCount()).isEqualTo(4);
+    }
+
+    /**
+     * Tests that CSV exports start with a header line, even when they are empty.
+     */
+    @Test
+    void csvStartsWithHeader() throws IOException {
+        var output = new ByteArrayOutputStream();
+        var writer = new PrimeExportWriter(PrimeExportFormat.CSV, output);
+        writer.finish();
+        assertThat(output.toString(StandardCharsets.US_ASCII)).isEqualTo("prime\n");
+
+        output.reset();
+        writer = new PrimeExportWriter(PrimeExportFormat.CSV, output);
+        writer.write(List.of(7L, 11L));
+        writer.finish();
+        assertThat(output.toString(StandardCharsets.US_ASCII)).isEqualTo("prime\n7\n11\n");
+    }
+
+    /**
+     * Tests that binary exports decode back to the same primes, across many refills of the buffer.
+     */
+    @Test
+    void binaryRoundTrips() throws IOException {
+        long[] primes = new SegmentedSievePrimeSequenceGenerator().longStream(0, 2000000L, true).toArray();
+
+        var output = new ByteArrayOutputStream();
+        var writer = new PrimeExportWriter(PrimeExportFormat.BINARY, output);
+        for (long prime : primes) {
+            writer.write(prime);
+        }
+        writer.write(9223372036854775783L);
+        writer.finish();
+
+        byte[] bytes = output.toByteArray();
+        long[] decoded = new long[primes.length + 1];
+        int count = 0;
+        long previous = 0;
+        for (int i = 0; i < bytes.length; ) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[i++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            previous += delta;
+            decoded[count++] = previous;
+        }
+
+        assertThat(count).isEqualTo(primes.length + 1);
+        assertThat(decoded[count - 1]).isEqualTo(9223372036854775783L);
+        for (int i = 0; i < primes.length; i++) {
+            assertThat(decoded[i]).isEqualTo(primes[i]);
+        }
+
+        // Most gaps fit in a single byte
+        assertThat(bytes.length).isLessThan(primes.length + primes.length / 10);
+    }
+
+    /**
+     * Tests that formats are parsed regardless of case, and that unknown ones are rejected.
+     */
+    @Test
+    void formatsAreParsed() {
+        assertThat(PrimeExportFormat.parse("ndjson")).isEqualTo(PrimeExportFormat.NDJSON);
+        assertThat(PrimeExportFormat.parse("CSV")).isEqualTo(PrimeExportFormat.CSV);
+        assertThat(PrimeExportFormat.parse("Binary")).isEqualTo(PrimeExportFormat.BINARY);
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeExportFormat.parse("xml"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.llifon.prime.backend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeExtensionJob}, over an in-memory store.
+ */
+public class PrimeExtensionJobTests {
+
+    // The value up to which the tests extend the store
+    private static final long TARGET = 100000;
+
+    // The amount of numbers in every segment of the tests
+    private static final long SEGMENT_SIZE = 10000;
+
+    // The primes up to the target, which the store is checked against
+    private final PrimeIndex reference = PrimeIndex.build(TARGET);
+
+    /**
+     * Tests that a segment which was not completed is discarded, and written again from the checkpoint.
+     */
+    @Test
+    void resumesFromTheCheckpoint() {
+        var store = new InMemoryPrimeNumberStore();
+        store.fillBelow(60000);
+        store.completedUpTo = 50000;
+        var job = new Fixture(store).job;
+
+        job.extend();
+
+        assertThat(store.deletions).containsExactly(50000L);
+        assertThat(store.writes.get(0)).isEqualTo(reference.nextPrime(50000));
+        assertThat(store.primes).hasSize((int) reference.getPrimeCount());
+        assertThat(store.completedUpTo).isEqualTo(TARGET);
+        assertThat(job.getCompletedUpTo()).isEqualTo(TARGET);
+    }
+
+    /**
+     * Tests that every segment is checkpointed once all of its primes are stored, and that the bounds and the index
+     * only advance over segments which have been checkpointed.
+     */
+    @Test
+    void checkpointsEverySegmentBeforeAdvertisingIt() {
+        List<long[]> checkpoints = new ArrayList<>();
+        var fixture = new Fixture[1];
+        var store = new InMemoryPrimeNumberStore() {
+            @Override
+            public void markCompletedUpTo(long value) {
+                // The checkpoint, the stored primes, the advertised maximum and the bound of the index at that point
+                checkpoints.add(new long[]{value, countPrimes(), fixture[0].boundsHolder.get().getMax(),
+                        fixture[0].indexProvider.getIndex().getUpperBound()});
+                super.markCompletedUpTo(value);
+            }
+        };
+        store.fillBelow(10000);
+        store.completedUpTo = 9999;
+        fixture[0] = new Fixture(store);
+        fixture[0].indexProvider.rebuild();
+
+        fixture[0].job.extend();
+
+        assertThat(checkpoints).extracting(checkpoint -> checkpoint[0])
+                .containsExactly(19999L, 29999L, 39999L, 49999L, 59999L, 69999L, 79999L, 89999L, 99999L, TARGET);
+
+        long previous = 9999;
+        for (long[] checkpoint : checkpoints) {
+            assertThat(checkpoint[1]).as("primes stored at %s", checkpoint[0]).isEqualTo(reference.countUpTo(checkpoint[0]));
+            assertThat(checkpoint[2]).as("maximum at %s", checkpoint[0]).isEqualTo(reference.previousPrime(previous + 1));
+            assertThat(checkpoint[3]).as("index at %s", checkpoint[0]).isEqualTo(checkpoint[2]);
+            previous = checkpoint[0];
+        }
+
+        assertThat(fixture[0].boundsHolder.get().getMax()).isEqualTo(99991);
+        assertThat(fixture[0].indexProvider.getIndex().getUpperBound()).isEqualTo(99991);
+        assertThat(fixture[0].indexProvider.getIndex().getPrimeCount()).isEqualTo(reference.getPrimeCount());
+        assertThat(store.deletions).isEmpty();
+    }
+
+    /**
+     * Tests that a store which was populated before checkpoints were recorded is trusted up to its largest prime.
+     */
+    @Test
+    void legacyStoreIsCheckpointedAtItsLargestPrime() {
+        var store = new InMemoryPrimeNumberStore();
+        store.fillBelow(10000);
+
+        new Fixture(store).job.extend();
+
+        assertThat(store.writes.get(0)).isEqualTo(reference.nextPrime(9973));
+        assertThat(store.primes).hasSize((int) reference.getPrimeCount());
+        assertThat(store.deletions).isEmpty();
+    }
+
+    /**
+     * The job under test, along with the bounds and index that it keeps up to date.
+     */
+    private static final class Fixture {
+
+        // The cached bounds of the store
+        final PrimeDatasetBoundsHolder boundsHolder;
+
+        // The provider of the in-memory index of the store
+        final PrimeIndexProvider indexProvider;
+
+        // The job, which extends the store up to TARGET
+        final PrimeExtensionJob job;
+
+        /**
+         * Creates the job.
+         *
+         * @param store The store to extend.
+         */
+        Fixture(PrimeNumberStore store) {
+            var properties = new PrimeBackendProperties();
+            properties.getExtension().setTarget(TARGET);
+            properties.getExtension().setSegmentSize(SEGMENT_SIZE);
+
+            var metrics = new PrimeMetrics(new SimpleMeterRegistry());
+            this.boundsHolder = new PrimeDatasetBoundsHolder(store, metrics);
+            this.indexProvider = new PrimeIndexProvider(store, boundsHolder, properties);
+            this.job = new PrimeExtensionJob(store, boundsHolder, indexProvider, properties, metrics);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeIndex}.
+ */
+public class PrimeIndexTests {
+
+    /**
+     * Tests that the index holds exactly the primes produced by the sieve, for bounds around the wheel and
+     * rank-block boundaries.
+     */
+    @Test
+    void indexMatchesSieve() {
+        var generator = new SegmentedSievePrimeSequenceGenerator();
+
+        for (long upperBound : new long[]{0, 1, 2, 5, 6, 7, 29, 30, 31, 239, 240, 1919, 1920, 1921, 50000}) {
+            var index = PrimeIndex.build(upperBound);
+            long[] expected = generator.longStream(0, upperBound, true).toArray();
+
+            assertThat(index.getPrimeCount()).isEqualTo(expected.length);
+            for (int k = 0; k < expected.length; k++) {
+                assertThat(index.select(k)).isEqualTo(expected[k]);
+            }
+        }
+    }
+
+    /**
+     * Tests that an extended index holds exactly the same primes as one built up to the new bound, for bounds
+     * around the wheel, word and segment boundaries.
+     */
+    @Test
+    void extendedIndexMatchesBuiltIndex() {
+        long[][] extensions = {{0, 7}, {29, 30}, {239, 240}, {1919, 1921}, {50000, 50000}, {50000, 1000000}, {1, 2000000}};
+
+        for (long[] extension : extensions) {
+            var extended = PrimeIndex.build(extension[0]).extendTo(extension[1]);
+            var built = PrimeIndex.build(extension[1]);
+
+            assertThat(extended.getUpperBound()).isEqualTo(extension[1]);
+            assertThat(extended.getPrimeCount()).isEqualTo(built.getPrimeCount());
+            assertThat(extended.page(0, extension[1], 0, Integer.MAX_VALUE))
+                    .containsExactly(built.page(0, extension[1], 0, Integer.MAX_VALUE));
+        }
+
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeIndex.build(100).extendTo(99));
+    }
+
+    /**
+     * Tests the prime-counting function against known values of pi(x).
+     */
+    @Test
+    void countUpToMatchesKnownValues() {
+        var index = PrimeIndex.build(10000000);
+
+        assertThat(index.countUpTo(1)).isEqualTo(0);
+        assertThat(index.countUpTo(2)).isEqualTo(1);
+        assertThat(index.countUpTo(10)).isEqualTo(4);
+        assertThat(index.countUpTo(100)).isEqualTo(25);
+        assertThat(index.countUpTo(1000000)).isEqualTo(78498);
+        assertThat(index.countUpTo(10000000)).isEqualTo(664579);
+        assertThat(index.count(100, 200)).isEqualTo(21);
+        assertThat(index.getLargestPrime()).isEqualTo(9999991L);
+    }
+
+    /**
+     * Tests that pages of a range are sliced the same way as the repository would page them.
+     */
+    @Test
+    void pageReturnsTheRequestedSliceOfTheRange() {
+        var index = PrimeIndex.build(1000);
+
+        assertThat(index.page(1, 10, 0, 2)).containsExactly(2, 3);
+        assertThat(index.page(1, 10, 2, 2)).containsExactly(5, 7);
+        assertThat(index.page(1, 11, 4, 2)).containsExactly(11);
+        assertThat(index.page(1, 10, 4, 2)).isEmpty();
+        assertThat(index.page(990, 5000, 0, 10)).containsExactly(991, 997);
+    }
+
+    /**
+     * Tests the single number lookups.
+     */
+    @Test
+    void lookupsAnswerAroundPrimes() {
+        var index = PrimeIndex.build(1000);
+
+        assertThat(index.isPrime(997)).isTrue();
+        assertThat(index.isPrime(999)).isFalse();
+        assertThat(index.isPrime(1)).isFalse();
+        assertThat(index.nextPrime(0)).isEqualTo(2);
+        assertThat(index.nextPrime(7)).isEqualTo(11);
+        assertThat(index.nextPrime(997)).isEqualTo(-1);
+        assertThat(index.previousPrime(2)).isEqualTo(-1);
+        assertThat(index.previousPrime(11)).isEqualTo(7);
+        assertThat(Arrays.stream(index.page(0, 1000, 0, 1000)).filter(index::isPrime).count()).isEqualTo(168);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> index.isPrime(1001));
+    }
+
+    /**
+     * Tests that an index which is saved to a file and mapped back answers exactly like the original.
+     */
+    @Test
+    void indexSurvivesSaveAndMap(@TempDir Path directory) throws IOException {
+        var file = directory.resolve("primes.idx");
+        var index = PrimeIndex.build(1000003);
+        index.save(file);
+
+        var mapped = PrimeIndex.map(file);
+
+        assertThat(mapped.getUpperBound()).isEqualTo(index.getUpperBound());
+        assertThat(mapped.getPrimeCount()).isEqualTo(78499);
+        assertThat(mapped.page(0, 1000003, 0, 100000)).containsExactly(index.page(0, 1000003, 0, 100000));
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThatThrownBy(() -> PrimeIndex.map(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeLookupService}.
+ */
+public class PrimeLookupServiceTests {
+
+    // The upper bound of the index which the service is tested over
+    private static final long INDEX_BOUND = 10000;
+
+    // The service, which answers from an index up to INDEX_BOUND and with Miller-Rabin beyond it
+    private final PrimeLookupService service = serviceOver(PrimeIndex.build(INDEX_BOUND));
+
+    /**
+     * Tests that small numbers are classified correctly.
+     */
+    @Test
+    void smallNumbersAreClassified() {
+        assertThat(service.isPrime(-7)).isFalse();
+        assertThat(service.isPrime(0)).isFalse();
+        assertThat(service.isPrime(1)).isFalse();
+        assertThat(service.isPrime(2)).isTrue();
+        assertThat(service.isPrime(9)).isFalse();
+        assertThat(service.isPrime(97)).isTrue();
+    }
+
+    /**
+     * Tests that the answers from the index agree with those from Miller-Rabin, on both sides of its upper bound.
+     */
+    @Test
+    void indexAgreesWithMillerRabin() {
+        var withoutIndex = serviceOver(null);
+
+        for (long n = -2; n <= 2 * INDEX_BOUND; n++) {
+            assertThat(service.isPrime(n)).as("isPrime(%s)", n).isEqualTo(withoutIndex.isPrime(n));
+            assertThat(service.nextPrime(n)).as("nextPrime(%s)", n).isEqualTo(withoutIndex.nextPrime(n));
+            assertThat(service.previousPrime(n)).as("previousPrime(%s)", n).isEqualTo(withoutIndex.previousPrime(n));
+        }
+    }
+
+    /**
+     * Tests that the next and previous primes are found both within the index and beyond it, including across
+     * its upper bound.
+     */
+    @Test
+    void neighboursAreFoundAcrossTheIndexBound() {
+        assertThat(service.nextPrime(-5)).isEqualTo(2);
+        assertThat(service.nextPrime(2)).isEqualTo(3);
+        assertThat(service.nextPrime(13)).isEqualTo(17);
+        assertThat(service.previousPrime(2)).isEqualTo(-1);
+        assertThat(service.previousPrime(3)).isEqualTo(2);
+        assertThat(service.previousPrime(17)).isEqualTo(13);
+
+        // 9973 is the largest prime within the index, and 10007 the first one after it
+        assertThat(service.nextPrime(9973)).isEqualTo(10007);
+        assertThat(service.nextPrime(INDEX_BOUND)).isEqualTo(10007);
+        assertThat(service.previousPrime(10007)).isEqualTo(9973);
+        assertThat(service.previousPrime(INDEX_BOUND + 1)).isEqualTo(9973);
+        assertThat(service.isPrime(10007)).isTrue();
+
+        assertThat(service.nextPrime(Long.MAX_VALUE - 100)).isEqualTo(Long.MAX_VALUE - 24);
+        assertThat(service.nextPrime(Long.MAX_VALUE - 24)).isEqualTo(-1);
+        assertThat(service.previousPrime(Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE - 24);
+    }
+
+    /**
+     * Tests that batches answer in order and that oversized batches are rejected.
+     */
+    @Test
+    void batchesAreAnsweredInOrder() {
+        assertThat(service.lookupAll(List.of(4L, 5L, 6L, 7L), service::isPrime)).containsExactly(false, true, false, true);
+
+        var tooMany = Collections.nCopies(PrimeLookupService.MAX_BATCH_SIZE + 1, 2L);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> service.lookupAll(tooMany, service::isPrime));
+    }
+
+    /**
+     * Creates a lookup service over a fixed index.
+     *
+     * @param index The index, or null to answer everything with Miller-Rabin.
+     * @return The service.
+     */
+    private static PrimeLookupService serviceOver(PrimeIndex index) {
+        return new PrimeLookupService(new PrimeIndexProvider(null, null, new PrimeBackendProperties()) {
+            @Override
+            public PrimeIndex getIndex() {
+                return index;
+            }
+        });
+    }
+}
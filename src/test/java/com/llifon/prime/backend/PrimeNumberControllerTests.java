@@ -0,0 +1,137 @@
+package com.llifon.prime.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for {@link PrimeNumberController}, over a file store of the primes up to 1000.
+ */
+public class PrimeNumberControllerTests {
+
+    // The controller, with the error handling of the application
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp(@TempDir Path directory) throws IOException {
+        var properties = new PrimeBackendProperties();
+        properties.getStorage().setFile(directory.resolve("primes.idx").toString());
+
+        var metrics = new PrimeMetrics(new SimpleMeterRegistry());
+        var store = new FilePrimeNumberStore(properties);
+        long[] primes = new SegmentedSievePrimeSequenceGenerator().longStream(2, 1000, true).toArray();
+        store.write(primes, primes.length);
+        store.flush();
+
+        var boundsHolder = new PrimeDatasetBoundsHolder(store, metrics);
+        var indexProvider = new PrimeIndexProvider(store, boundsHolder, properties);
+        indexProvider.rebuild();
+
+        var controller = new PrimeNumberController(
+                new PrimeNumberService(store, indexProvider, boundsHolder, new OnDemandPrimeSource(properties), metrics),
+                new PrimeLookupService(indexProvider),
+                new PrimePageCache(boundsHolder, properties),
+                new ObjectMapper(),
+                metrics);
+
+        this.mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new RestExceptionInterceptor())
+                .build();
+    }
+
+    /**
+     * Tests that batches are answered in order.
+     */
+    @Test
+    void batchIsAnswered() throws Exception {
+        mvc.perform(post("/is-prime").contentType(MediaType.APPLICATION_JSON).content("[4, 5, 1009]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"n\":4,\"isPrime\":false},{\"n\":5,\"isPrime\":true},"
+                        + "{\"n\":1009,\"isPrime\":true}]"));
+    }
+
+    /**
+     * Tests that an oversized batch is rejected with a bad request.
+     */
+    @Test
+    void oversizedBatchIsRejected() throws Exception {
+        String body = Collections.nCopies(PrimeLookupService.MAX_BATCH_SIZE + 1, "7").stream()
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mvc.perform(post("/next-prime").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("A batch may contain at most 10000 numbers"));
+    }
+
+    /**
+     * Tests that a batch which is not an array of whole numbers is rejected with a bad request.
+     */
+    @Test
+    void malformedBatchIsRejected() throws Exception {
+        for (String body : new String[]{"{}", "[1, null]", "[1.5]", "[1, 2", "[99999999999999999999]"}) {
+            mvc.perform(post("/prev-prime").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    /**
+     * Tests that errors are reported as JSON, even to clients which only accept the binary encoding.
+     */
+    @Test
+    void errorsAreJsonForBinaryClients() throws Exception {
+        mvc.perform(get("/prime-range").param("from", "10").param("to", "5").accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("'to' param must be > 'from' value"));
+    }
+
+    /**
+     * Tests that clients which prefer the binary encoding get it.
+     */
+    @Test
+    void binaryRangeIsServed() throws Exception {
+        var result = mvc.perform(get("/prime-range").param("from", "2").param("to", "100")
+                .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andReturn();
+
+        var response = PrimeNumberResponseCodec.read(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(response.getPrimeNumbers()).hasSize(25);
+    }
+
+    /**
+     * Tests that clients of the binary encoding get the timings that they ask for in the body, as JSON clients do.
+     */
+    @Test
+    void binaryRangeCarriesTimings() throws Exception {
+        var result = mvc.perform(get("/prime-range").param("from", "2").param("to", "100").param("timings", "true")
+                .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        var response = PrimeNumberResponseCodec.read(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(response.getTimings().getPhases())
+                .containsKeys(PrimeRequestTimings.VALIDATE, PrimeRequestTimings.FETCH, PrimeRequestTimings.ASSEMBLE);
+    }
+}
@@ -0,0 +1,113 @@
+package com.llifon.prime.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeNumberResponseCodec}.
+ */
+public class PrimeNumberResponseCodecTests {
+
+    /**
+     * Creates a response holding the first primes after a value.
+     *
+     * @param from  The value.
+     * @param count The amount of primes.
+     * @return The response.
+     */
+    private static PrimeNumberResponse responseOf(long from, int count) {
+        long[] primes = new SegmentedSievePrimeSequenceGenerator().longStream(from, from + count * 64L, true).limit(count).toArray();
+
+        PrimeNumberRequest request = new PrimeNumberRequest();
+        request.setRequestStart(from);
+        request.setRequestEnd(from + count * 64L);
+        request.setPageIndex(3);
+        request.setViewSize(count);
+
+        PrimePageMetadata page = new PrimePageMetadata();
+        page.setPageIndex(3);
+        page.setElementsOnPage(primes.length);
+        page.setTotalElementsAvailable(-1);
+        page.setTotalPages(-1);
+
+        PrimeNumberResponse response = new PrimeNumberResponse();
+        response.setRequestInfo(request);
+        response.setPageInfo(page);
+        response.setPrimeNumbers(Arrays.stream(primes).boxed().collect(Collectors.toList()));
+        response.setProcessingTime(12);
+        response.setNextCursor(PrimeRangeCursor.encode(primes[primes.length - 1]));
+        return response;
+    }
+
+    /**
+     * Tests that a response decodes back to the same fields and primes.
+     */
+    @Test
+    void responseRoundTrips() throws IOException {
+        var response = responseOf(1000000000L, 1000);
+
+        var output = new ByteArrayOutputStream();
+        PrimeNumberResponseCodec.write(response, output);
+        var decoded = PrimeNumberResponseCodec.read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(decoded.getPrimeNumbers()).containsExactlyElementsOf(response.getPrimeNumbers());
+        assertThat(decoded.getNextCursor()).isEqualTo(response.getNextCursor());
+        assertThat(decoded.getProcessingTime()).isEqualTo(12);
+        assertThat(decoded.getRequestInfo().getRequestStart()).isEqualTo(1000000000L);
+        assertThat(decoded.getRequestInfo().getCursor()).isNull();
+        assertThat(decoded.getPageInfo().getPageIndex()).isEqualTo(3);
+        assertThat(decoded.getPageInfo().getElementsOnPage()).isEqualTo(1000);
+        assertThat(decoded.getPageInfo().getTotalElementsAvailable()).isEqualTo(-1);
+    }
+
+    /**
+     * Tests that the timings of a response decode back to the same phases, in the same order.
+     */
+    @Test
+    void timingsRoundTrip() throws IOException {
+        var response = responseOf(1000, 10);
+        var timings = new PrimeRequestTimings();
+        timings.add(PrimeRequestTimings.VALIDATE, 1200);
+        timings.add(PrimeRequestTimings.FETCH, 345678);
+        timings.add(PrimeRequestTimings.ASSEMBLE, 9);
+        response.setTimings(timings);
+
+        var output = new ByteArrayOutputStream();
+        PrimeNumberResponseCodec.write(response, output);
+        var decoded = PrimeNumberResponseCodec.read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertThat(decoded.getTimings().getPhases()).containsExactlyEntriesOf(timings.getPhases());
+        assertThat(decoded.getPrimeNumbers()).containsExactlyElementsOf(response.getPrimeNumbers());
+    }
+
+    /**
+     * Tests that the binary encoding is several times smaller than the JSON one.
+     */
+    @Test
+    void binaryIsSmallerThanJson() throws IOException {
+        var response = responseOf(1000000000L, 10000);
+
+        var output = new ByteArrayOutputStream();
+        PrimeNumberResponseCodec.write(response, output);
+        byte[] json = new ObjectMapper().writeValueAsBytes(response);
+
+        assertThat(output.size() * 5).isLessThan(json.length);
+    }
+
+    /**
+     * Tests that bodies which are not encoded responses are rejected.
+     */
+    @Test
+    void foreignBodiesAreRejected() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> PrimeNumberResponseCodec.read(new ByteArrayInputStream(new byte[16])));
+    }
+}
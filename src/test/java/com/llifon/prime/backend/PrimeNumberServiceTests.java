@@ -1,10 +1,21 @@
 package com.llifon.prime.backend;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 @SpringBootTest
@@ -58,4 +69,130 @@ public class PrimeNumberServiceTests {
                 .isThrownBy(() -> service.requestPagedPrimeNumbers(2, 2, 1, -1));
     }
 
+    /**
+     * Tests that a page which straddles the stored maximum is completed from the generated primes.
+     */
+    @Test
+    void pageStraddlingStoredMaxIsCompletedByGeneration(@TempDir Path directory) throws IOException {
+        var service = onDemandService(directory, 1000, 1000000);
+        var expected = primesBetween(900, 1100);
+
+        // 14 of the primes from 900 are stored, so the second page holds the last 4 of them and 6 generated ones
+        var response = service.requestPagedPrimeNumbers(900, 1100, 10, 1);
+
+        assertThat(response.getPrimeNumbers()).containsExactlyElementsOf(expected.subList(10, 20));
+        assertThat(response.getPrimeNumbers().get(3)).isEqualTo(997L);
+        assertThat(response.getPageInfo().getTotalElementsAvailable()).isEqualTo(-1);
+        assertThat(response.getPageInfo().getTotalPages()).isEqualTo(-1);
+        assertThat(response.getNextCursor()).isNotNull();
+    }
+
+    /**
+     * Tests that the first page which lies entirely past the stored maximum skips the right amount of generated primes,
+     * and that the last page reports that there is nothing after it.
+     */
+    @Test
+    void generatedPagesSkipTheStoredPrimes(@TempDir Path directory) throws IOException {
+        var service = onDemandService(directory, 1000, 1000000);
+        var expected = primesBetween(900, 1100);
+
+        var firstGenerated = service.requestPagedPrimeNumbers(900, 1100, 10, 2);
+        assertThat(firstGenerated.getPrimeNumbers()).containsExactlyElementsOf(expected.subList(20, 30));
+        assertThat(firstGenerated.getPrimeNumbers()).allMatch(prime -> prime > 1000);
+
+        int lastPage = (expected.size() - 1) / 10;
+        var last = service.requestPagedPrimeNumbers(900, 1100, 10, lastPage);
+        assertThat(last.getPrimeNumbers()).containsExactlyElementsOf(expected.subList(lastPage * 10, expected.size()));
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    /**
+     * Tests that following the cursors walks through every prime of a range which crosses the stored maximum,
+     * exactly once and in order.
+     */
+    @Test
+    void cursorWalkCrossesStoredMax(@TempDir Path directory) throws IOException {
+        var service = onDemandService(directory, 1000, 1000000);
+
+        var walked = new ArrayList<Long>();
+        String cursor = null;
+        do {
+            var response = service.requestPrimesAfterCursor(900, 1100, cursor, 7);
+            walked.addAll(response.getPrimeNumbers());
+            cursor = response.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(walked).containsExactlyElementsOf(primesBetween(900, 1100));
+    }
+
+    /**
+     * Tests that a page which cannot be generated within the budget is rejected with an
+     * {@link IllegalArgumentException}, which the API reports as a bad request.
+     */
+    @Test
+    void pageBeyondTheBudgetIsRejected(@TempDir Path directory) throws IOException {
+        var service = onDemandService(directory, 1000, 1000);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> service.requestPagedPrimeNumbers(2, 1000000, 100, 50))
+                .withMessageContaining("too far beyond the stored primes");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> service.requestPrimesAfterCursor(500000, 1000000, null, 100))
+                .withMessageContaining("too far beyond the stored primes");
+    }
+
+    /**
+     * Tests that an export whose generated part spans more than the budget is rejected before anything is streamed.
+     */
+    @Test
+    void exportBeyondTheSpanIsRejectedUpFront(@TempDir Path directory) throws IOException {
+        var service = onDemandService(directory, 1000, 1000);
+
+        assertThat(service.exportPrimes(2, 1900, PrimeExportFormat.CSV)).isNotNull();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> service.exportPrimes(2, Long.MAX_VALUE, PrimeExportFormat.CSV))
+                .withMessageContaining("too far beyond the stored primes");
+    }
+
+    /**
+     * Creates a service over a file store which holds every prime up to a maximum, and which generates the primes
+     * past it on demand.
+     *
+     * @param directory The directory to keep the index file in.
+     * @param storedMax The value up to which the primes are stored.
+     * @param maxSpan   The maximum amount of numbers that a request may generate through.
+     * @return The service.
+     * @throws IOException if the index file cannot be written.
+     */
+    private static PrimeNumberService onDemandService(Path directory, long storedMax, long maxSpan) throws IOException {
+        var properties = new PrimeBackendProperties();
+        properties.getStorage().setFile(directory.resolve("primes.idx").toString());
+        properties.getOnDemand().setEnabled(true);
+        properties.getOnDemand().setMaxSpan(maxSpan);
+        properties.getOnDemand().setTimeBudget(Duration.ofSeconds(10));
+
+        var metrics = new PrimeMetrics(new SimpleMeterRegistry());
+        var store = new FilePrimeNumberStore(properties);
+        long[] primes = new SegmentedSievePrimeSequenceGenerator().longStream(2, storedMax, true).toArray();
+        store.write(primes, primes.length);
+        store.flush();
+
+        var boundsHolder = new PrimeDatasetBoundsHolder(store, metrics);
+        var indexProvider = new PrimeIndexProvider(store, boundsHolder, properties);
+        indexProvider.rebuild();
+
+        return new PrimeNumberService(store, indexProvider, boundsHolder, new OnDemandPrimeSource(properties), metrics);
+    }
+
+    /**
+     * Lists the primes within a range with the sieve.
+     *
+     * @param from The first value in the range.
+     * @param to   The last value in the range (inclusive).
+     * @return The primes, in ascending order.
+     */
+    private static List<Long> primesBetween(long from, long to) {
+        return Arrays.stream(new SegmentedSievePrimeSequenceGenerator().longStream(from, to, true).toArray())
+                .boxed().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,158 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimePageCache}.
+ */
+public class PrimePageCacheTests {
+
+    /**
+     * A holder whose bounds are set by the test, rather than read from a store.
+     */
+    private static class FixedBoundsHolder extends PrimeDatasetBoundsHolder {
+
+        // The bounds to hand out
+        private PrimeDatasetBounds bounds = new PrimeDatasetBounds(2, 97, 25, 1);
+
+        FixedBoundsHolder() {
+            super(null, null);
+        }
+
+        @Override
+        public PrimeDatasetBounds get() {
+            return bounds;
+        }
+    }
+
+    /**
+     * Creates a cache which holds at most 8 KB.
+     *
+     * @param holder The bounds holder.
+     * @return The cache.
+     */
+    private static PrimePageCache cacheOf(PrimeDatasetBoundsHolder holder) {
+        var properties = new PrimeBackendProperties();
+        properties.getCache().setMaxSize(DataSize.ofKilobytes(8));
+        return new PrimePageCache(holder, properties);
+    }
+
+    /**
+     * Creates the key of the first page of a range.
+     *
+     * @param to The end of the range.
+     * @return The key.
+     */
+    private static PrimePageCache.Key keyOf(long to) {
+        return new PrimePageCache.Key(2, to, 0, 100, null, false);
+    }
+
+    /**
+     * Tests that cached responses are returned for equal keys only.
+     */
+    @Test
+    void cachedResponsesAreReturned() {
+        var cache = cacheOf(new FixedBoundsHolder());
+        cache.put(keyOf(100), cache.currentVersion(), new byte[]{1, 2, 3});
+
+        assertThat(cache.get(keyOf(100))).containsExactly(1, 2, 3);
+        assertThat(cache.get(keyOf(101))).isNull();
+        assertThat(cache.get(new PrimePageCache.Key(2, 100, 0, 100, null, true))).isNull();
+    }
+
+    /**
+     * Tests that the least recently used responses are evicted once the cache is full.
+     */
+    @Test
+    void leastRecentlyUsedResponsesAreEvicted() {
+        var cache = cacheOf(new FixedBoundsHolder());
+        long version = cache.currentVersion();
+
+        for (long to = 0; to < 20; to++) {
+            cache.put(keyOf(to), version, new byte[872]);
+            cache.get(keyOf(0));
+        }
+
+        // Every entry takes up 1000 bytes with its overhead, so only 8 of them fit, and the first one stays in use
+        assertThat(cache.getUsedBytes()).isLessThanOrEqualTo(8 * 1024);
+        assertThat(cache.get(keyOf(0))).isNotNull();
+        assertThat(cache.get(keyOf(1))).isNull();
+        assertThat(cache.get(keyOf(19))).isNotNull();
+
+        // Responses larger than an eighth of the cache are not cached at all
+        cache.put(keyOf(100), version, new byte[2000]);
+        assertThat(cache.get(keyOf(100))).isNull();
+    }
+
+    /**
+     * Tests that the cache is dropped when the stored primes change, and that responses built before the change are
+     * not cached.
+     */
+    @Test
+    void cacheIsDroppedWhenTheStoredPrimesChange() {
+        var holder = new FixedBoundsHolder();
+        var cache = cacheOf(holder);
+
+        long before = cache.currentVersion();
+        cache.put(keyOf(100), before, new byte[]{1});
+
+        holder.bounds = new PrimeDatasetBounds(2, 101, 26, 2);
+        assertThat(cache.get(keyOf(100))).isNull();
+        assertThat(cache.getUsedBytes()).isZero();
+
+        cache.put(keyOf(100), before, new byte[]{1});
+        assertThat(cache.get(keyOf(100))).isNull();
+
+        cache.put(keyOf(100), cache.currentVersion(), new byte[]{2});
+        assertThat(cache.get(keyOf(100))).containsExactly(2);
+    }
+
+    /**
+     * Tests that a large cache, which is striped into segments, stays within its size under concurrent use and is
+     * still dropped as a whole when the stored primes change.
+     */
+    @Test
+    void stripedCacheStaysWithinItsSize() throws Exception {
+        var holder = new FixedBoundsHolder();
+        var properties = new PrimeBackendProperties();
+        properties.getCache().setMaxSize(DataSize.ofMegabytes(64));
+        var cache = new PrimePageCache(holder, properties);
+        long version = cache.currentVersion();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < 8; t++) {
+                long first = t * 10000L;
+                tasks.add(() -> {
+                    for (long to = first; to < first + 10000; to++) {
+                        cache.put(keyOf(to), version, new byte[2048]);
+                        assertThat(cache.get(keyOf(to))).isNotNull();
+                    }
+                    return null;
+                });
+            }
+
+            for (var future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 80000 entries of over 2 KB do not fit in 64 MB, so some of them were evicted
+        assertThat(cache.getUsedBytes()).isPositive().isLessThanOrEqualTo(64L * 1024 * 1024);
+        assertThat(cache.get(keyOf(0))).isNull();
+
+        holder.bounds = new PrimeDatasetBounds(2, 101, 26, 2);
+        assertThat(cache.getUsedBytes()).isZero();
+    }
+}
@@ -0,0 +1,31 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for {@link PrimeRangeCursor}.
+ */
+public class PrimeRangeCursorTests {
+
+    /**
+     * Tests that a cursor decodes back to the prime that it was created from.
+     */
+    @Test
+    void cursorRoundTrips() {
+        for (long prime : new long[]{-1, 0, 2, 9999991, Long.MAX_VALUE - 24}) {
+            assertThat(PrimeRangeCursor.decode(PrimeRangeCursor.encode(prime))).isEqualTo(prime);
+        }
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown for cursors which were not created by the service.
+     */
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeRangeCursor.decode("not a cursor!"));
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeRangeCursor.decode("AAAA"));
+        assertThatIllegalArgumentException().isThrownBy(() -> PrimeRangeCursor.decode(""));
+    }
+}
@@ -0,0 +1,43 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PrimeRequestTimingsTests {
+
+    /**
+     * Tests that phases keep the order they were first entered in, and that repeated laps of a phase add up.
+     */
+    @Test
+    void repeatedPhasesAddUp() {
+        var timings = new PrimeRequestTimings();
+        timings.lap(PrimeRequestTimings.VALIDATE);
+        timings.lap(PrimeRequestTimings.FETCH);
+        long firstFetch = timings.getPhases().get(PrimeRequestTimings.FETCH);
+        timings.lap(PrimeRequestTimings.COUNT);
+        timings.lap(PrimeRequestTimings.FETCH);
+
+        assertThat(timings.getPhases()).containsOnlyKeys(
+                PrimeRequestTimings.VALIDATE, PrimeRequestTimings.FETCH, PrimeRequestTimings.COUNT);
+        assertThat(timings.getPhases().keySet()).containsExactly(
+                PrimeRequestTimings.VALIDATE, PrimeRequestTimings.FETCH, PrimeRequestTimings.COUNT);
+        assertThat(timings.getPhases().get(PrimeRequestTimings.FETCH)).isGreaterThanOrEqualTo(firstFetch);
+        assertThat(timings.getPhases().values()).allMatch(nanos -> nanos >= 0);
+    }
+
+    /**
+     * Tests that the Server-Timing header lists every phase with its duration in milliseconds.
+     */
+    @Test
+    void serverTimingListsPhasesInMilliseconds() {
+        var timings = new PrimeRequestTimings();
+        assertThat(timings.toServerTiming()).isEmpty();
+
+        timings.lap(PrimeRequestTimings.VALIDATE);
+        timings.lap(PrimeRequestTimings.SERIALIZE);
+
+        assertThat(timings.toServerTiming())
+                .matches("validate;dur=\\d+\\.\\d{3}, serialize;dur=\\d+\\.\\d{3}");
+    }
+}
@@ -0,0 +1,154 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SegmentedSievePrimeSequenceGeneratorTests {
+
+    /**
+     * Tests that the FINAL value in a sequence is the same as the {@code upTo} parameter, if the value
+     * itself is a prime number and the {@code inclusive} flag is set to {@code true}.
+     */
+    @Test
+    public void includesFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToTrue() {
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, true);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L, 13L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that the FINAL value in a sequence is less than the {@code upTo} parameter, if the value
+     * itself is a prime number but the {@code inclusive} flag is set to {@code false}.
+     */
+    @Test
+    public void omitFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToFalse() {
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, false);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown if the FROM value is larger than the UPTO value.
+     */
+    @Test
+    public void exceptionThrownIfFromIsLargerThanUpTo() {
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+
+        assertThatThrownBy(() -> generator.generate(2L, 1L, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{from} (2) must be less than or equal to {upTo} (1)");
+    }
+
+    /**
+     * Tests that the sequence is correct across segment boundaries, by using a tiny segment size.
+     */
+    @Test
+    public void sequenceIsCorrectAcrossSegmentBoundaries() {
+        var expected = new ArrayList<Long>();
+        new SegmentedSievePrimeSequenceGenerator().generate(0L, 10000L, true).forEachRemaining(expected::add);
+
+        for (int segmentSize : new int[]{1, 7, 64, 65, 1000}) {
+            var actual = new ArrayList<Long>();
+            new SegmentedSievePrimeSequenceGenerator(segmentSize).generate(0L, 10000L, true).forEachRemaining(actual::add);
+
+            assertThat(actual).containsExactlyElementsOf(expected);
+        }
+
+        assertThat(expected).hasSize(1229);
+    }
+
+    /**
+     * Tests that a range which does not start near zero only contains the real primes of that range.
+     */
+    @Test
+    public void rangeFarFromZeroOnlyContainsPrimes() {
+        long from = 1000000000L;
+        long upTo = from + 100000L;
+
+        var actual = new ArrayList<Long>();
+        new SegmentedSievePrimeSequenceGenerator().generate(from, upTo, true).forEachRemaining(actual::add);
+
+        var expected = new ArrayList<Long>();
+        for (long n = from; n <= upTo; n++) {
+            if (BigInteger.valueOf(n).isProbablePrime(64)) {
+                expected.add(n);
+            }
+        }
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    /**
+     * Tests that the primitive API produces the same sequence as the boxed API.
+     */
+    @Test
+    public void primitiveSequenceMatchesBoxedSequence() {
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+
+        var boxed = new ArrayList<Long>();
+        generator.generate(100L, 100000L, false).forEachRemaining(boxed::add);
+
+        assertThat(generator.longStream(100L, 100000L, false).boxed()).containsExactlyElementsOf(boxed);
+    }
+
+    /**
+     * Tests that the caller-supplied buffer is filled and handed over in chunks.
+     */
+    @Test
+    public void generateIntoFillsBufferInChunks() {
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+
+        var chunkSizes = new ArrayList<Integer>();
+        var actual = new ArrayList<Long>();
+        long total = generator.generateInto(2L, 30L, true, new long[4], (chunk, count) -> {
+            chunkSizes.add(count);
+            for (int i = 0; i < count; i++) {
+                actual.add(chunk[i]);
+            }
+        });
+
+        assertThat(total).isEqualTo(10);
+        assertThat(chunkSizes).containsExactly(4, 4, 2);
+        assertThat(actual).containsExactly(2L, 3L, 5L, 7L, 11L, 13L, 17L, 19L, 23L, 29L);
+    }
+
+    /**
+     * Tests the performance of the implementation over a range which does not start at zero.
+     */
+    @Test
+    public void measurePerformance() {
+        Instant now = Instant.now();
+
+        SegmentedSievePrimeSequenceGenerator generator = new SegmentedSievePrimeSequenceGenerator();
+        generator.generateLongs(1000000000L, 1001000000L, true).forEachRemaining((long p) -> { });
+        Instant end = Instant.now();
+
+        System.out.printf("Segmented implementation took %d ms to execute 1 range of 1,000,000,000 - 1,001,000,000",
+                Duration.between(now, end).toMillis());
+    }
+}
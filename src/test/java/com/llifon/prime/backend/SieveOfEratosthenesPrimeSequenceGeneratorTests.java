@@ -94,6 +94,33 @@ public class SieveOfEratosthenesPrimeSequenceGeneratorTests {
         assertThatNoException().isThrownBy(() -> generator.generate(2, 2, false));
     }
 
+    /**
+     * Tests that a range which does not start at zero only contains the real primes of that range.
+     */
+    @Test
+    public void rangeNotStartingAtZeroOnlyContainsPrimes() {
+        SieveOfEratosthenesPrimeSequenceGenerator generator = new SieveOfEratosthenesPrimeSequenceGenerator();
+        var primes = generator.generate(1000000, 1000100, true);
+
+        Integer[] expectedPrimes = {1000003, 1000033, 1000037, 1000039, 1000081, 1000099};
+
+        List<Integer> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(expectedPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that the sequence can be consumed lazily as a stream.
+     */
+    @Test
+    public void sequenceCanBeStreamed() {
+        SieveOfEratosthenesPrimeSequenceGenerator generator = new SieveOfEratosthenesPrimeSequenceGenerator();
+
+        assertThat(generator.stream(2, 1000000, true).count()).isEqualTo(78498);
+        assertThat(generator.stream(2, Integer.MAX_VALUE, true).limit(5)).containsExactly(2, 3, 5, 7, 11);
+    }
+
     /**
      * Tests the performance of the implementation.
      * <p>
@@ -104,7 +131,7 @@ public class SieveOfEratosthenesPrimeSequenceGeneratorTests {
         Instant now = Instant.now();
 
         SieveOfEratosthenesPrimeSequenceGenerator generator = new SieveOfEratosthenesPrimeSequenceGenerator();
-        generator.generate(2, 1000000, true);
+        generator.generate(2, 1000000, true).forEachRemaining(p -> { });
         Instant end = Instant.now();
 
         System.out.printf("Integer implementation took %d ms to execute 1 range of 2 - 1,000,000",
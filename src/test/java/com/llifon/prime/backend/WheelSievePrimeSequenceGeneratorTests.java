@@ -0,0 +1,104 @@
+package com.llifon.prime.backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class WheelSievePrimeSequenceGeneratorTests {
+
+    /**
+     * Tests that the FINAL value in a sequence is the same as the {@code upTo} parameter, if the value
+     * itself is a prime number and the {@code inclusive} flag is set to {@code true}.
+     */
+    @Test
+    public void includesFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToTrue() {
+        WheelSievePrimeSequenceGenerator generator = new WheelSievePrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, true);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L, 13L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that the FINAL value in a sequence is less than the {@code upTo} parameter, if the value
+     * itself is a prime number but the {@code inclusive} flag is set to {@code false}.
+     */
+    @Test
+    public void omitFinalPrimeWhenUpToValueIsPrimeAndInclusiveSetToFalse() {
+        WheelSievePrimeSequenceGenerator generator = new WheelSievePrimeSequenceGenerator();
+        var primes = generator.generate(2L, 13L, false);
+
+        Long[] earlyPrimes = {
+                2L, 3L,
+                5L, 7L,
+                11L};
+
+        List<Long> actualList = new ArrayList<>();
+        primes.forEachRemaining(actualList::add);
+
+        assertThat(earlyPrimes).containsExactlyElementsOf(actualList);
+    }
+
+    /**
+     * Tests that a {@link IllegalArgumentException} is thrown if the FROM value is larger than the UPTO value.
+     */
+    @Test
+    public void exceptionThrownIfFromIsLargerThanUpTo() {
+        WheelSievePrimeSequenceGenerator generator = new WheelSievePrimeSequenceGenerator();
+
+        assertThatThrownBy(() -> generator.generate(2L, 1L, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("{from} (2) must be less than or equal to {upTo} (1)");
+    }
+
+    /**
+     * Tests that the wheel sieve agrees with the plain segmented sieve, for ranges that start and end at every
+     * position of the wheel and across segment boundaries.
+     */
+    @Test
+    public void sequenceMatchesSegmentedSieve() {
+        var reference = new SegmentedSievePrimeSequenceGenerator();
+
+        for (int segmentBytes : new int[]{1, 3, 8, 9, 1000}) {
+            var generator = new WheelSievePrimeSequenceGenerator(segmentBytes);
+
+            for (long from = 0; from < 60; from++) {
+                for (long upTo = from; upTo < from + 2000; upTo += 37) {
+                    assertThat(generator.longStream(from, upTo, true).toArray())
+                            .containsExactly(reference.longStream(from, upTo, true).toArray());
+                }
+            }
+
+            long from = 1000000000000L;
+            assertThat(generator.longStream(from, from + 100000L, false).toArray())
+                    .containsExactly(reference.longStream(from, from + 100000L, false).toArray());
+        }
+    }
+
+    /**
+     * Tests the performance of the implementation.
+     */
+    @Test
+    public void measurePerformance() {
+        Instant now = Instant.now();
+
+        WheelSievePrimeSequenceGenerator generator = new WheelSievePrimeSequenceGenerator();
+        generator.generateLongs(2L, 100000000L, true).forEachRemaining((long p) -> { });
+        Instant end = Instant.now();
+
+        System.out.printf("Wheel implementation took %d ms to execute 1 range of 2 - 100,000,000",
+                Duration.between(now, end).toMillis());
+    }
+}